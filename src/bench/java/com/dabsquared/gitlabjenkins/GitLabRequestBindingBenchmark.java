@@ -0,0 +1,91 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares the streaming adapters of {@link GitLabRequestAdapters} with the
+ * reflective binding they replaced, which parsed the payload into a tree to read
+ * its <code>object_kind</code> and then bound the tree.
+ *
+ * Run with <code>mvn -Pbenchmarks test-compile exec:exec</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GitLabRequestBindingBenchmark {
+
+    /** Number of commits in the push payload; GitLab sends at most 20. */
+    @Param({"1", "20"})
+    public int commits;
+
+    private final Gson reflective = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    private String push;
+    private String mergeRequest;
+
+    @Setup
+    public void setUp() {
+        int start = GitLabRequestTest.PUSH.indexOf("\"commits\": [") + "\"commits\": [".length();
+        int end = GitLabRequestTest.PUSH.indexOf("],\"total_commits_count\"");
+        String commit = GitLabRequestTest.PUSH.substring(start, GitLabRequestTest.PUSH.indexOf("},  {", start) + 1);
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < commits; i++) {
+            list.append(i == 0 ? "" : ",").append(commit);
+        }
+        push = GitLabRequestTest.PUSH.substring(0, start) + list + GitLabRequestTest.PUSH.substring(end);
+        mergeRequest = GitLabRequestTest.MERGE_REQUEST;
+    }
+
+    @Benchmark
+    public GitLabRequest streamingPush() {
+        return GitLabRequest.create(new StringReader(push));
+    }
+
+    @Benchmark
+    public GitLabRequest reflectivePush() {
+        return reflective(push);
+    }
+
+    @Benchmark
+    public GitLabRequest streamingMergeRequest() {
+        return GitLabRequest.create(new StringReader(mergeRequest));
+    }
+
+    @Benchmark
+    public GitLabRequest reflectiveMergeRequest() {
+        return reflective(mergeRequest);
+    }
+
+    private GitLabRequest reflective(String payload) {
+        JsonElement tree = new JsonParser().parse(payload);
+        JsonElement kind = tree.getAsJsonObject().get("object_kind");
+        if (kind != null && "merge_request".equals(kind.getAsString())) {
+            return reflective.fromJson(tree, GitLabMergeRequest.class);
+        }
+        return reflective.fromJson(tree, GitLabPushRequest.class);
+    }
+}
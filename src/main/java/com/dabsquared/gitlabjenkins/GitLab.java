@@ -6,27 +6,48 @@ import java.util.logging.Logger;
 
 import org.gitlab.api.GitlabAPI;
 
+/**
+ * Holder of the GitLab API client shared across the plugin. The client is created
+ * lazily from the global configuration and replaced when that configuration changes;
+ * calls already in progress finish on the client they started with.
+ */
 public class GitLab {
   private static final Logger LOGGER = Logger.getLogger(GitLab.class.getName());
-  private GitlabAPI api;
+  private volatile GitlabAPI api;
 
   public GitlabAPI instance() {
-    if (api == null) {
-    	String token = GitLabPushTrigger.getDesc().getGitlabApiToken();
-        String url = GitLabPushTrigger.getDesc().getGitlabHostUrl();
-        boolean ignoreCertificateErrors = GitLabPushTrigger.getDesc().getIgnoreCertificateErrors();
-        LOGGER.log(Level.FINE, "Connecting to Gitlab server ({0})", url);
-        api = GitlabAPI.connect(url, token);
-        api.ignoreCertificateErrors(ignoreCertificateErrors);
+    GitlabAPI result = api;
+    if (result == null) {
+      synchronized (this) {
+        result = api;
+        if (result == null) {
+          String token = GitLabPushTrigger.getDesc().getGitlabApiToken();
+          String url = GitLabPushTrigger.getDesc().getGitlabHostUrl();
+          boolean ignoreCertificateErrors = GitLabPushTrigger.getDesc().getIgnoreCertificateErrors();
+          LOGGER.log(Level.FINE, "Connecting to Gitlab server ({0})", url);
+          result = GitlabAPI.connect(url, token);
+          result.ignoreCertificateErrors(ignoreCertificateErrors);
+          api = result;
+        }
+      }
     }
 
-    return api;
+    return result;
   }
-  
+
+  /**
+   * Drops the current client, so that the next call connects with the current configuration.
+   * Holds the lock of {@link #instance()}, so that a client being created from the previous
+   * configuration is published before it is dropped rather than after.
+   */
+  public synchronized void reset() {
+    api = null;
+  }
+
   public static boolean checkConnection (String token, String url, boolean ignoreCertificateErrors) throws IOException {
 	  GitlabAPI testApi = GitlabAPI.connect(url, token);
 	  testApi.ignoreCertificateErrors(ignoreCertificateErrors);
 	  testApi.getProjects();
 	  return true;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.Plugin;
+import hudson.model.AbstractBuild;
+import hudson.model.BallColor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jenkins.model.Jenkins;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Build status badges, served from immutable in-memory copies. The PNG images are
+ * read from the plugin's resources once; the SVG images are rendered once per status.
+ */
+public final class GitLabBadge {
+
+    public static final String RUNNING = "running";
+    public static final String SUCCESS = "success";
+    public static final String FAILED = "failed";
+    public static final String UNSTABLE = "unstable";
+    public static final String UNKNOWN = "unknown";
+
+    private static final ConcurrentMap<String, byte[]> PNG = new ConcurrentHashMap<String, byte[]>();
+    private static final ConcurrentMap<String, byte[]> SVG = new ConcurrentHashMap<String, byte[]>();
+
+    private static final String SVG_TEMPLATE =
+            "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"{width}\" height=\"20\">"
+            + "<linearGradient id=\"b\" x2=\"0\" y2=\"100%\"><stop offset=\"0\" stop-color=\"#bbb\" stop-opacity=\".1\"/><stop offset=\"1\" stop-opacity=\".1\"/></linearGradient>"
+            + "<mask id=\"a\"><rect width=\"{width}\" height=\"20\" rx=\"3\" fill=\"#fff\"/></mask>"
+            + "<g mask=\"url(#a)\"><path fill=\"#555\" d=\"M0 0h37v20H0z\"/><path fill=\"{color}\" d=\"M37 0h{statusWidth}v20H37z\"/><path fill=\"url(#b)\" d=\"M0 0h{width}v20H0z\"/></g>"
+            + "<g fill=\"#fff\" text-anchor=\"middle\" font-family=\"DejaVu Sans,Verdana,Geneva,sans-serif\" font-size=\"11\">"
+            + "<text x=\"18.5\" y=\"15\" fill=\"#010101\" fill-opacity=\".3\">build</text><text x=\"18.5\" y=\"14\">build</text>"
+            + "<text x=\"{statusX}\" y=\"15\" fill=\"#010101\" fill-opacity=\".3\">{status}</text><text x=\"{statusX}\" y=\"14\">{status}</text>"
+            + "</g></svg>";
+
+    private GitLabBadge() {
+    }
+
+    /**
+     * @param build the build to describe, or null if there is none
+     * @return one of {@link #RUNNING}, {@link #SUCCESS}, {@link #FAILED}, {@link #UNSTABLE} or {@link #UNKNOWN}
+     */
+    public static String getStatus(AbstractBuild build) {
+        if (build == null) {
+            return UNKNOWN;
+        }
+        BallColor currentBallColor = build.getIconColor().noAnime();
+        if (build.isBuilding()) {
+            return RUNNING;
+        } else if (currentBallColor == BallColor.BLUE) {
+            return SUCCESS;
+        } else if (currentBallColor == BallColor.RED) {
+            return FAILED;
+        } else if (currentBallColor == BallColor.YELLOW) {
+            return UNSTABLE;
+        } else {
+            return UNKNOWN;
+        }
+    }
+
+    public static byte[] getPNG(String status) throws IOException {
+        byte[] image = PNG.get(status);
+        if (image == null) {
+            image = loadPNG(status);
+            PNG.putIfAbsent(status, image);
+        }
+        return image;
+    }
+
+    public static byte[] getSVG(String status) {
+        byte[] image = SVG.get(status);
+        if (image == null) {
+            image = renderSVG(status);
+            SVG.putIfAbsent(status, image);
+        }
+        return image;
+    }
+
+    private static byte[] loadPNG(String status) throws IOException {
+        Plugin plugin = Jenkins.getInstance().getPlugin("gitlab-plugin");
+        if (plugin == null) {
+            throw new IOException("gitlab-plugin is not loaded");
+        }
+        URL resourceUrl = new URL(plugin.getWrapper().baseResourceURL, "images/" + status + ".png");
+        InputStream in = resourceUrl.openStream();
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] renderSVG(String status) {
+        // Rough text width for an 11px sans-serif font, which is good enough for a badge
+        int statusWidth = status.length() * 7 + 10;
+        String svg = SVG_TEMPLATE
+                .replace("{width}", String.valueOf(37 + statusWidth))
+                .replace("{statusWidth}", String.valueOf(statusWidth))
+                .replace("{statusX}", String.valueOf(37 + statusWidth / 2.0))
+                .replace("{color}", getColor(status))
+                .replace("{status}", status);
+        try {
+            return svg.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String getColor(String status) {
+        if (SUCCESS.equals(status)) {
+            return "#4c1";
+        } else if (FAILED.equals(status)) {
+            return "#e05d44";
+        } else if (UNSTABLE.equals(status)) {
+            return "#dfb317";
+        } else if (RUNNING.equals(status)) {
+            return "#007ec6";
+        } else {
+            return "#9f9f9f";
+        }
+    }
+}
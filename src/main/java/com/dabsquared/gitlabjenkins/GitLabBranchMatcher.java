@@ -0,0 +1,234 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Matches branch names against a comma separated list of patterns, compiled once:
+ * <ul>
+ * <li><code>master</code> matches that branch only;</li>
+ * <li><code>release/*</code> matches branches starting with <code>release/</code>
+ * without a further <code>/</code>;</li>
+ * <li><code>feature/**</code> matches branches starting with <code>feature/</code>;</li>
+ * <li><code>/hotfix-\d+/</code> matches branches matching the regular expression;</li>
+ * <li>other patterns containing <code>*</code> or <code>?</code> are globs, where
+ * <code>*</code> does not match <code>/</code> and <code>**</code> does.</li>
+ * </ul>
+ * Names and prefixes are kept in a trie, so that matching them takes time
+ * proportional to the length of the branch name whatever the number of patterns.
+ * Regular expressions and globs are combined into a single pattern.
+ *
+ * Commas inside a regular expression do not separate patterns, so that
+ * <code>/release-\d{1,3}/</code> is a single pattern: a regular expression runs
+ * from a leading <code>/</code> to the next <code>/</code> followed by a comma or
+ * the end of the list. Invalid regular expressions are logged and ignored.
+ */
+public class GitLabBranchMatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabBranchMatcher.class.getName());
+
+    private final Node root = new Node();
+    private final Pattern pattern;
+    private final boolean empty;
+
+    public GitLabBranchMatcher(String spec) {
+        List<String> expressions = new ArrayList<String>();
+        boolean empty = true;
+        for (String token : split(spec)) {
+            // an invalid pattern still counts, so that a list of only invalid patterns matches nothing
+            empty = false;
+            if (isRegex(token)) {
+                String regex = token.substring(1, token.length() - 1);
+                String error = checkRegex(regex);
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Ignoring invalid branch pattern {0}: {1}", new Object[]{token, error});
+                    continue;
+                }
+                expressions.add(regex);
+            } else if (!hasWildcard(token)) {
+                root.add(token).exact = true;
+            } else if (token.endsWith("**") && !hasWildcard(token.substring(0, token.length() - 2))) {
+                root.add(token.substring(0, token.length() - 2)).anyRest = true;
+            } else if (token.endsWith("*") && !hasWildcard(token.substring(0, token.length() - 1))) {
+                root.add(token.substring(0, token.length() - 1)).segmentRest = true;
+            } else {
+                expressions.add(globToRegex(token));
+            }
+        }
+        this.empty = empty;
+        this.pattern = expressions.isEmpty() ? null : Pattern.compile("(?:" + Joiner.on(")|(?:").join(expressions) + ")");
+    }
+
+    /**
+     * @return a description of each invalid pattern of the list, empty if all are valid
+     */
+    public static List<String> validate(String spec) {
+        List<String> errors = new ArrayList<String>();
+        for (String token : split(spec)) {
+            if (isRegex(token)) {
+                String error = checkRegex(token.substring(1, token.length() - 1));
+                if (error != null) {
+                    errors.add(token + ": " + error);
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return true if there are no patterns, valid or not
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public boolean matches(String branch) {
+        if (branch == null) {
+            return false;
+        }
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            if (node.anyRest || (node.segmentRest && branch.indexOf('/', i) < 0)) {
+                return true;
+            }
+            if (i == branch.length()) {
+                if (node.exact) {
+                    return true;
+                }
+                break;
+            }
+            node = node.children == null ? null : node.children.get(branch.charAt(i));
+        }
+        return pattern != null && pattern.matcher(branch).matches();
+    }
+
+    /**
+     * Splits the list on the commas that are not inside a regular expression,
+     * and trims the patterns.
+     */
+    static List<String> split(String spec) {
+        List<String> tokens = new ArrayList<String>();
+        if (spec == null) {
+            return tokens;
+        }
+        int length = spec.length();
+        int start = 0;
+        while (start < length) {
+            int first = start;
+            while (first < length && Character.isWhitespace(spec.charAt(first))) {
+                first++;
+            }
+            int end = first < length && spec.charAt(first) == '/' ? regexEnd(spec, first) : -1;
+            if (end < 0) {
+                end = spec.indexOf(',', first);
+                if (end < 0) {
+                    end = length;
+                }
+            }
+            String token = spec.substring(first, end).trim();
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+            start = end + 1;
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the position of the comma, or the end of the list, following the
+     *         regular expression opened at <code>first</code>, or -1 if it is not closed
+     */
+    private static int regexEnd(String spec, int first) {
+        for (int i = spec.indexOf('/', first + 1); i >= 0; i = spec.indexOf('/', i + 1)) {
+            int next = i + 1;
+            while (next < spec.length() && Character.isWhitespace(spec.charAt(next))) {
+                next++;
+            }
+            if (next == spec.length() || spec.charAt(next) == ',') {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isRegex(String token) {
+        return token.length() > 2 && token.startsWith("/") && token.endsWith("/");
+    }
+
+    /**
+     * @return the reason the regular expression is invalid, or null if it is valid
+     */
+    private static String checkRegex(String regex) {
+        try {
+            Pattern.compile(regex);
+            return null;
+        } catch (PatternSyntaxException e) {
+            return e.getDescription();
+        }
+    }
+
+    private static boolean hasWildcard(String token) {
+        return token.indexOf('*') >= 0 || token.indexOf('?') >= 0;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                continue;
+            }
+            if (literal < i) {
+                regex.append(Pattern.quote(glob.substring(literal, i)));
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+            literal = i + 1;
+        }
+        if (literal < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literal)));
+        }
+        return regex.toString();
+    }
+
+    private static class Node {
+        private Map<Character, Node> children;
+        /** A branch name ends here. */
+        private boolean exact;
+        /** Any branch with this prefix matches. */
+        private boolean anyRest;
+        /** Any branch with this prefix and no further '/' matches. */
+        private boolean segmentRest;
+
+        Node add(String prefix) {
+            Node node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (node.children == null) {
+                    node.children = new HashMap<Character, Node>();
+                }
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.ParametersAction;
+import hudson.model.StringParameterValue;
+import hudson.plugins.git.Branch;
+import hudson.plugins.git.Revision;
+import hudson.plugins.git.RevisionParameterAction;
+import hudson.plugins.git.util.Build;
+import hudson.plugins.git.util.BuildData;
+import hudson.plugins.git.util.MergeRecord;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory index of the builds of each job by the commit they built, kept apart
+ * for push and merge request builds, and by the branch they built, so that status
+ * and redirect lookups do not have to walk the build history.
+ *
+ * The history of a job is scanned once, the first time the job is looked up.
+ * From then on {@link GitLabRunListener} keeps the index current as builds
+ * start, complete and are deleted.
+ */
+public final class GitLabBuildIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabBuildIndex.class.getName());
+
+    private static final int SHA1_LENGTH = 40;
+
+    private static final Map<AbstractProject, JobIndex> INDEXES =
+            Collections.synchronizedMap(new WeakHashMap<AbstractProject, JobIndex>());
+
+    private GitLabBuildIndex() {
+    }
+
+    /**
+     * @param commitSHA1 the full or abbreviated SHA1 of the commit
+     * @param triggeredByMergeRequest whether to look for merge request builds or push builds
+     * @return the latest build of the given kind that built the commit, or null
+     */
+    public static AbstractBuild getBuildBySHA1(AbstractProject project, String commitSHA1, boolean triggeredByMergeRequest) {
+        if (commitSHA1 == null) {
+            return null;
+        }
+        JobIndex index = getIndex(project, true);
+        Integer number = index.getBySHA1(commitSHA1.toLowerCase(), triggeredByMergeRequest);
+        return getBuild(project, index, number);
+    }
+
+    /**
+     * @param branch the branch name, with or without remote name
+     * @return latest build of the branch specified that is not part of a merge request, or null
+     */
+    public static AbstractBuild getBuildByBranch(AbstractProject project, String branch) {
+        if (branch == null) {
+            return null;
+        }
+        JobIndex index = getIndex(project, true);
+        return getBuild(project, index, index.getByBranch(branch));
+    }
+
+    /**
+     * Batch variant of {@link #getBuildBySHA1} that reads the index once for all commits.
+     *
+     * @return the build found for each commit, in the order given; commits without a build are left out
+     */
+    public static Map<String, AbstractBuild> getBuildsBySHA1(AbstractProject project, Collection<String> commitSHA1s, boolean triggeredByMergeRequest) {
+        JobIndex index = getIndex(project, true);
+        Map<String, Integer> numbers = new LinkedHashMap<String, Integer>();
+        synchronized (index) {
+            for (String commitSHA1 : commitSHA1s) {
+                numbers.put(commitSHA1, index.getBySHA1(commitSHA1.toLowerCase(), triggeredByMergeRequest));
+            }
+        }
+        return getBuilds(project, index, numbers);
+    }
+
+    /**
+     * Batch variant of {@link #getBuildByBranch} that reads the index once for all branches.
+     *
+     * @return the build found for each branch, in the order given; branches without a build are left out
+     */
+    public static Map<String, AbstractBuild> getBuildsByBranch(AbstractProject project, Collection<String> branches) {
+        JobIndex index = getIndex(project, true);
+        Map<String, Integer> numbers = new LinkedHashMap<String, Integer>();
+        synchronized (index) {
+            for (String branch : branches) {
+                numbers.put(branch, index.getByBranch(branch));
+            }
+        }
+        return getBuilds(project, index, numbers);
+    }
+
+    public static void onStarted(AbstractBuild build) {
+        JobIndex index = getIndex(build.getProject(), false);
+        if (index == null) {
+            return;
+        }
+        GitLabMergeCause mergeCause = (GitLabMergeCause) build.getCause(GitLabMergeCause.class);
+        if (mergeCause != null) {
+            if (mergeCause.getLastCommitSHA1() != null) {
+                index.putSHA1(mergeCause.getLastCommitSHA1(), true, build.getNumber());
+            }
+        } else if (build.getCause(GitLabPushCause.class) != null) {
+            RevisionParameterAction revision = build.getAction(RevisionParameterAction.class);
+            if (revision != null && revision.commit != null) {
+                index.putSHA1(revision.commit, false, build.getNumber());
+            }
+            ParametersAction params = build.getAction(ParametersAction.class);
+            if (params != null && !isMergeRequestBuild(params)) {
+                StringParameterValue branch = (StringParameterValue) params.getParameter("gitlabSourceBranch");
+                if (branch != null && branch.value != null) {
+                    index.putBranch(branch.value, build.getNumber());
+                }
+            }
+        }
+    }
+
+    public static void onCompleted(AbstractBuild build) {
+        JobIndex index = getIndex(build.getProject(), false);
+        if (index != null) {
+            index.add(build);
+        }
+    }
+
+    public static void onDeleted(AbstractBuild build) {
+        JobIndex index = getIndex(build.getProject(), false);
+        if (index != null) {
+            index.remove(build.getNumber());
+        }
+    }
+
+    private static JobIndex getIndex(AbstractProject project, boolean create) {
+        JobIndex index;
+        synchronized (INDEXES) {
+            index = INDEXES.get(project);
+            if (index == null && create) {
+                index = new JobIndex();
+                INDEXES.put(project, index);
+            }
+        }
+        if (index != null && create) {
+            index.load(project);
+        }
+        return index;
+    }
+
+    private static AbstractBuild getBuild(AbstractProject project, JobIndex index, Integer number) {
+        if (number == null) {
+            return null;
+        }
+        AbstractBuild build = (AbstractBuild) project.getBuildByNumber(number);
+        if (build == null) {
+            // deleted without us being notified, e.g. by log rotation of an unloaded build
+            index.remove(number);
+        }
+        return build;
+    }
+
+    private static Map<String, AbstractBuild> getBuilds(AbstractProject project, JobIndex index, Map<String, Integer> numbers) {
+        Map<String, AbstractBuild> builds = new LinkedHashMap<String, AbstractBuild>();
+        for (Map.Entry<String, Integer> entry : numbers.entrySet()) {
+            AbstractBuild build = getBuild(project, index, entry.getValue());
+            if (build != null) {
+                builds.put(entry.getKey(), build);
+            }
+        }
+        return builds;
+    }
+
+    private static boolean isMergeRequestBuild(ParametersAction params) {
+        StringParameterValue sourceBranch = (StringParameterValue) params.getParameter("gitlabSourceBranch");
+        StringParameterValue targetBranch = (StringParameterValue) params.getParameter("gitlabTargetBranch");
+        return sourceBranch != null && (targetBranch == null || !sourceBranch.value.equals(targetBranch.value));
+    }
+
+    private static class JobIndex {
+        /** Numbers of the builds of each commit and branch, so that an older build takes over when the latest is deleted. */
+        private final Map<String, TreeSet<Integer>> pushBuilds = new HashMap<String, TreeSet<Integer>>();
+        private final Map<String, TreeSet<Integer>> mergeRequestBuilds = new HashMap<String, TreeSet<Integer>>();
+        private final Map<String, TreeSet<Integer>> branchBuilds = new HashMap<String, TreeSet<Integer>>();
+        private boolean loaded = false;
+
+        synchronized void load(AbstractProject project) {
+            if (loaded) {
+                return;
+            }
+            LOGGER.log(Level.FINE, "Indexing builds of {0}", project.getFullName());
+            for (AbstractBuild build : (List<AbstractBuild>) project.getBuilds()) {
+                add(build);
+            }
+            loaded = true;
+        }
+
+        /**
+         * Indexes a build that has checked out its revision, classifying it as a
+         * push or merge request build the same way the former history scan did.
+         */
+        synchronized void add(AbstractBuild build) {
+            BuildData data = build.getAction(BuildData.class);
+            if (data == null) {
+                return;
+            }
+            MergeRecord mergeRecord = build.getAction(MergeRecord.class);
+            addBranches(build, data, mergeRecord);
+            if (mergeRecord == null) {
+                ParametersAction params = build.getAction(ParametersAction.class);
+                if (params == null) {
+                    return;
+                }
+                if (!isMergeRequestBuild(params)) {
+                    Revision revision = data.getLastBuiltRevision();
+                    if (revision != null) {
+                        putSHA1(revision.getSha1String(), false, build.getNumber());
+                    }
+                } else {
+                    for (Build b : data.getBuildsByBranchName().values()) {
+                        if (b.getBuildNumber() == build.getNumber() && b.getMarked() != null) {
+                            putSHA1(b.getMarked().getSha1String(), true, build.getNumber());
+                        }
+                    }
+                }
+            } else {
+                Build b = data.lastBuild;
+                if (b != null && b.getMarked() != null) {
+                    String sha1 = b.getMarked().getSha1String();
+                    putSHA1(sha1, !mergeRecord.getSha1().equals(sha1), build.getNumber());
+                }
+            }
+        }
+
+        private void addBranches(AbstractBuild build, BuildData data, MergeRecord mergeRecord) {
+            Build b = data.lastBuild;
+            if (b == null || b.getRevision() == null) {
+                return;
+            }
+            boolean isMergeBuild = mergeRecord != null && b.getMarked() != null
+                    && !mergeRecord.getSha1().equals(b.getMarked().getSha1String());
+            if (!isMergeBuild) {
+                for (Branch branch : b.getRevision().getBranches()) {
+                    putBranch(branch.getName(), build.getNumber());
+                }
+            }
+        }
+
+        /**
+         * Indexes the build under every suffix of the branch name that follows a
+         * '/', so that "origin/feature/foo" is found as "feature/foo" and "foo".
+         */
+        synchronized void putBranch(String branch, int number) {
+            putNumber(branchBuilds, branch, number);
+            for (int i = branch.indexOf('/'); i >= 0; i = branch.indexOf('/', i + 1)) {
+                putNumber(branchBuilds, branch.substring(i + 1), number);
+            }
+        }
+
+        synchronized Integer getByBranch(String branch) {
+            return getLatest(branchBuilds, branch);
+        }
+
+        synchronized void putSHA1(String sha1, boolean mergeRequest, int number) {
+            putNumber(mergeRequest ? mergeRequestBuilds : pushBuilds, sha1, number);
+        }
+
+        synchronized Integer getBySHA1(String sha1, boolean mergeRequest) {
+            Map<String, TreeSet<Integer>> builds = mergeRequest ? mergeRequestBuilds : pushBuilds;
+            Integer number = getLatest(builds, sha1);
+            if (number == null && sha1.length() < SHA1_LENGTH) {
+                // abbreviated SHA1, as used by some status badges
+                for (Map.Entry<String, TreeSet<Integer>> entry : builds.entrySet()) {
+                    if (entry.getKey().startsWith(sha1) && (number == null || number < entry.getValue().last())) {
+                        number = entry.getValue().last();
+                    }
+                }
+            }
+            return number;
+        }
+
+        synchronized void remove(int number) {
+            removeNumber(pushBuilds, number);
+            removeNumber(mergeRequestBuilds, number);
+            removeNumber(branchBuilds, number);
+        }
+
+        private static void putNumber(Map<String, TreeSet<Integer>> builds, String key, int number) {
+            TreeSet<Integer> numbers = builds.get(key);
+            if (numbers == null) {
+                numbers = new TreeSet<Integer>();
+                builds.put(key, numbers);
+            }
+            numbers.add(number);
+        }
+
+        private static Integer getLatest(Map<String, TreeSet<Integer>> builds, String key) {
+            TreeSet<Integer> numbers = builds.get(key);
+            return numbers == null ? null : numbers.last();
+        }
+
+        private static void removeNumber(Map<String, TreeSet<Integer>> builds, int number) {
+            for (Iterator<TreeSet<Integer>> it = builds.values().iterator(); it.hasNext();) {
+                TreeSet<Integer> numbers = it.next();
+                if (numbers.remove(number) && numbers.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Finds skip markers such as <code>[ci skip]</code> in commit messages, ignoring
+ * case. The markers are compiled into an Aho-Corasick automaton, so a message is
+ * scanned once whatever the number of markers.
+ */
+public class GitLabCiSkipMatcher {
+
+    public static final String DEFAULT_MARKERS = "[ci-skip], [ci skip], [skip ci]";
+
+    /**
+     * Which commits of a push must be marked for it to be skipped.
+     */
+    public enum Policy {
+        ANY("Skip if any commit is marked"),
+        ALL("Skip only if every commit is marked");
+
+        private final String description;
+
+        Policy(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final State root = new State();
+
+    public GitLabCiSkipMatcher(String markers) {
+        for (String marker : Splitter.on(',').trimResults().omitEmptyStrings().split(markers == null ? "" : markers)) {
+            State state = root;
+            for (char c : marker.toLowerCase(Locale.ENGLISH).toCharArray()) {
+                State next = state.next.get(c);
+                if (next == null) {
+                    next = new State();
+                    state.next.put(c, next);
+                }
+                state = next;
+            }
+            state.accepting = true;
+        }
+        // breadth first, so that the failure state of a state's parent is complete before the state's
+        LinkedList<State> queue = new LinkedList<State>();
+        for (State child : root.next.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            State state = queue.poll();
+            for (Map.Entry<Character, State> transition : state.next.entrySet()) {
+                State child = transition.getValue();
+                State failure = state.failure;
+                while (failure != root && !failure.next.containsKey(transition.getKey())) {
+                    failure = failure.failure;
+                }
+                State target = failure.next.get(transition.getKey());
+                child.failure = target != null ? target : root;
+                child.accepting |= child.failure.accepting;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return true if the message contains one of the markers
+     */
+    public boolean matches(String message) {
+        if (message == null) {
+            return false;
+        }
+        State state = root;
+        for (int i = 0; i < message.length(); i++) {
+            char c = Character.toLowerCase(message.charAt(i));
+            State next = state.next.get(c);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.next.get(c);
+            }
+            state = next != null ? next : root;
+            if (state.accepting) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the commits of a push are marked according to the policy;
+     *         false for a push without commits
+     */
+    public boolean matches(List<GitLabPushRequest.Commit> commits, Policy policy) {
+        if (commits == null || commits.isEmpty()) {
+            return false;
+        }
+        for (GitLabPushRequest.Commit commit : commits) {
+            boolean marked = matches(commit.getMessage());
+            if (marked && policy == Policy.ANY) {
+                return true;
+            }
+            if (!marked && policy == Policy.ALL) {
+                return false;
+            }
+        }
+        return policy == Policy.ALL;
+    }
+
+    private static class State {
+        private final Map<Character, State> next = new HashMap<Character, State>();
+        private State failure;
+        private boolean accepting;
+    }
+}
@@ -0,0 +1,181 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+import hudson.plugins.git.RevisionParameterAction;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+import org.gitlab.api.models.GitlabProject;
+
+/**
+ * Pushes the state of builds to the GitLab commit status API, so that GitLab
+ * does not need to poll <code>status.json</code>.
+ *
+ * Updates are sent asynchronously by a single thread. An update waits
+ * {@link #COALESCE_DELAY} before it is sent, and is replaced by any later update
+ * of the same commit in the meantime, so that only the latest of several quick
+ * state changes reaches GitLab.
+ */
+public class GitLabCommitStatusPublisher {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabCommitStatusPublisher.class.getName());
+
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String SUCCESS = "success";
+    public static final String FAILED = "failed";
+    public static final String CANCELED = "canceled";
+
+    private static final long COALESCE_DELAY = TimeUnit.SECONDS.toMillis(2);
+    private static final String CONTEXT = "jenkins";
+
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new NamingThreadFactory(new DaemonThreadFactory(), "GitLab commit status"));
+
+    /** Updates waiting to be sent, by project and commit. */
+    private final Map<String, Update> pending = new HashMap<String, Update>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Publishes the state of a build triggered by GitLab; builds with other causes are ignored.
+     */
+    public void publish(AbstractBuild build, String state) {
+        Integer projectId = null;
+        String sha = null;
+        GitLabMergeCause mergeCause = (GitLabMergeCause) build.getCause(GitLabMergeCause.class);
+        GitLabPushCause pushCause = (GitLabPushCause) build.getCause(GitLabPushCause.class);
+        if (mergeCause != null) {
+            projectId = mergeCause.getSourceProjectId();
+            sha = mergeCause.getLastCommitSHA1();
+        } else if (pushCause != null) {
+            projectId = pushCause.getProjectId();
+            // a retargeted build carries the causes of several pushes, the revision is the one built
+            RevisionParameterAction revision = build.getAction(RevisionParameterAction.class);
+            sha = revision != null ? revision.commit : pushCause.getCommitSHA1();
+        }
+        publish(projectId, sha, state, Jenkins.getInstance().getRootUrl() + build.getUrl());
+    }
+
+    /**
+     * Publishes the state of a completed build.
+     */
+    public void publishResult(AbstractBuild build) {
+        Result result = build.getResult();
+        if (result == Result.SUCCESS) {
+            publish(build, SUCCESS);
+        } else if (result == Result.ABORTED || result == Result.NOT_BUILT) {
+            publish(build, CANCELED);
+        } else {
+            publish(build, FAILED);
+        }
+    }
+
+    /**
+     * Publishes the state of a commit of a GitLab project.
+     *
+     * @param targetUrl the page GitLab links the status to
+     */
+    public void publish(Integer projectId, String sha, String state, String targetUrl) {
+        if (projectId == null || sha == null || sha.isEmpty()) {
+            return;
+        }
+        String key = projectId + "/" + sha;
+        synchronized (pending) {
+            Update previous = pending.put(key, new Update(projectId, sha, state, targetUrl));
+            if (previous != null) {
+                // the scheduled send picks the newer state up
+                coalesced.incrementAndGet();
+                return;
+            }
+        }
+        executor.schedule(new Send(key), COALESCE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of updates waiting to be sent
+     */
+    public int getDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return the number of updates sent so far
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of updates replaced by a later update of the same commit so far
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of updates that could not be sent so far
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    private static class Update {
+        private final Integer projectId;
+        private final String sha;
+        private final String state;
+        private final String targetUrl;
+
+        Update(Integer projectId, String sha, String state, String targetUrl) {
+            this.projectId = projectId;
+            this.sha = sha;
+            this.state = state;
+            this.targetUrl = targetUrl;
+        }
+    }
+
+    private class Send implements Runnable {
+        private final String key;
+
+        Send(String key) {
+            this.key = key;
+        }
+
+        public void run() {
+            Update update;
+            synchronized (pending) {
+                update = pending.remove(key);
+            }
+            if (update == null) {
+                return;
+            }
+            String tailUrl = GitlabProject.URL + "/" + update.projectId + "/statuses/" + update.sha;
+            try {
+                GitLabPushTrigger.getDesc().getGitlab().instance().dispatch()
+                        .with("state", update.state)
+                        .with("target_url", update.targetUrl)
+                        .with("name", CONTEXT)
+                        .to(tailUrl, Object.class);
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Could not set status of commit " + update.sha + " in project " + update.projectId + " to " + update.state, e);
+            }
+        }
+    }
+}
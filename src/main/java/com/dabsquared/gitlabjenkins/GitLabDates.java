@@ -0,0 +1,153 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Parses the dates found in GitLab webhook payloads, which come in two formats:
+ * <code>2014-06-08 17:23:34 +0200</code> (or <code>UTC</code> instead of the
+ * offset) and ISO 8601 such as <code>2014-06-08T15:23:34.123Z</code>.
+ *
+ * The format is recognised from the string itself and the fields are read in
+ * place, so parsing needs neither a formatter nor failed attempts, and is safe
+ * to use from any thread.
+ */
+final class GitLabDates {
+
+    private GitLabDates() {
+    }
+
+    /**
+     * @return the date, or null if the value is null or not in one of the supported formats
+     */
+    static Date parse(String value) {
+        if (value == null || value.length() < 19) {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        char separator = value.charAt(10);
+        if (year < 0 || value.charAt(4) != '-' || month < 1 || month > 12 || value.charAt(7) != '-' || day < 1 || day > 31
+                || (separator != ' ' && separator != 'T')
+                || hour < 0 || hour > 23 || value.charAt(13) != ':' || minute < 0 || minute > 59
+                || value.charAt(16) != ':' || second < 0 || second > 60) {
+            return null;
+        }
+
+        int length = value.length();
+        int pos = 19;
+        int millis = 0;
+        if (pos < length && value.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < length && Character.isDigit(value.charAt(pos))) {
+                if (pos - start < 3) {
+                    millis = millis * 10 + value.charAt(pos) - '0';
+                }
+                pos++;
+            }
+            if (pos == start) {
+                return null;
+            }
+            for (int scale = Math.min(pos - start, 3); scale < 3; scale++) {
+                millis *= 10;
+            }
+        }
+        while (pos < length && value.charAt(pos) == ' ') {
+            pos++;
+        }
+
+        int offsetMinutes = offset(value, pos);
+        if (offsetMinutes == Integer.MIN_VALUE) {
+            return null;
+        }
+        long time = ((daysFromEpoch(year, month, day) * 24 + hour) * 60 + minute - offsetMinutes) * 60 + second;
+        return new Date(time * 1000 + millis);
+    }
+
+    /**
+     * @return the date in ISO 8601, in UTC with milliseconds, as read back by {@link #parse}
+     */
+    static String format(Date date) {
+        long millis = date.getTime();
+        long seconds = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        long days = seconds >= 0 ? seconds / 86400 : (seconds - 86399) / 86400;
+        int secondOfDay = (int) (seconds - days * 86400);
+
+        // inverse of daysFromEpoch
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return String.format(Locale.ENGLISH, "%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", year, month, day,
+                secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, millis - seconds * 1000);
+    }
+
+    /**
+     * @return the offset from UTC in minutes of the zone starting at <code>pos</code>,
+     *         which is UTC if there is none, or {@link Integer#MIN_VALUE} if it cannot be read
+     */
+    private static int offset(String value, int pos) {
+        int length = value.length();
+        if (pos == length) {
+            return 0;
+        }
+        char sign = value.charAt(pos);
+        if (sign == 'Z') {
+            return pos + 1 == length ? 0 : Integer.MIN_VALUE;
+        }
+        if (length - pos == 3 && (value.startsWith("UTC", pos) || value.startsWith("GMT", pos))) {
+            return 0;
+        }
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int hours = digits(value, pos + 1, 2);
+        int minutesAt = pos + 3 < length && value.charAt(pos + 3) == ':' ? pos + 4 : pos + 3;
+        int minutes = digits(value, minutesAt, 2);
+        if (hours < 0 || minutes < 0 || minutesAt + 2 != length) {
+            return Integer.MIN_VALUE;
+        }
+        int offset = hours * 60 + minutes;
+        return sign == '-' ? -offset : offset;
+    }
+
+    /**
+     * @return the number formed by <code>count</code> digits at <code>pos</code>, or -1 if they are not all digits
+     */
+    private static int digits(String value, int pos, int count) {
+        if (pos + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + c - '0';
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the given date of the proleptic Gregorian calendar
+     */
+    private static long daysFromEpoch(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,104 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.model.AbstractProject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the webhook events delivered to each job for a limited time, so that
+ * GitLab retries and hooks registered twice do not trigger the same work again.
+ * Events are identified by a fingerprint: project, ref, before and after for a
+ * push; merge request, last commit and action for a merge request.
+ */
+public class GitLabEventDeduplicator {
+
+    private final long windowMillis;
+    private final int maxEvents;
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /** Delivery time by fingerprint, oldest first. */
+    private final LinkedHashMap<String, Long> events = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxEvents;
+        }
+    };
+
+    public GitLabEventDeduplicator(long windowMillis, int maxEvents) {
+        this.windowMillis = windowMillis;
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Records the delivery of an event.
+     *
+     * @return the fingerprint of the event if it is delivered for the first time
+     *         within the window, an empty string if the event carries too little
+     *         information to be fingerprinted, or null if it is a duplicate
+     */
+    public String record(AbstractProject project, GitLabRequest request) {
+        String fingerprint = fingerprint(project, request);
+        if (fingerprint == null) {
+            // not enough information to tell events apart
+            return "";
+        }
+        long now = System.currentTimeMillis();
+        synchronized (events) {
+            for (Iterator<Long> it = events.values().iterator(); it.hasNext();) {
+                if (it.next() > now - windowMillis) {
+                    break;
+                }
+                it.remove();
+            }
+            if (events.containsKey(fingerprint)) {
+                suppressed.incrementAndGet();
+                return null;
+            }
+            events.put(fingerprint, now);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Forgets an event that was recorded but could not be processed, so that
+     * its redelivery is accepted.
+     */
+    public void forget(String fingerprint) {
+        synchronized (events) {
+            events.remove(fingerprint);
+        }
+    }
+
+    /**
+     * @return the number of duplicate deliveries suppressed so far
+     */
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    private static String fingerprint(AbstractProject project, GitLabRequest request) {
+        StringBuilder fingerprint = new StringBuilder(project.getFullName());
+        if (request instanceof GitLabPushRequest) {
+            GitLabPushRequest push = (GitLabPushRequest) request;
+            if (push.getAfter() == null) {
+                return null;
+            }
+            fingerprint.append("|push|").append(push.getProject_id())
+                    .append('|').append(push.getRef())
+                    .append('|').append(push.getBefore())
+                    .append('|').append(push.getAfter());
+        } else {
+            GitLabMergeRequest.ObjectAttributes attributes = ((GitLabMergeRequest) request).getObjectAttribute();
+            if (attributes == null || attributes.getId() == null || attributes.getLastCommit() == null) {
+                return null;
+            }
+            fingerprint.append("|merge_request|").append(attributes.getId())
+                    .append('|').append(attributes.getLastCommit().getId())
+                    .append('|').append(attributes.getAction() != null ? attributes.getAction() : attributes.getState());
+        }
+        return fingerprint.toString();
+    }
+}
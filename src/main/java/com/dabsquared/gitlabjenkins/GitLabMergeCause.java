@@ -2,38 +2,139 @@ package com.dabsquared.gitlabjenkins;
 
 import hudson.triggers.SCMTrigger;
 
-import java.io.File;
-import java.io.IOException;
-
 /**
  * Created by daniel on 6/8/14.
+ *
+ * Keeps only the identity of the merge request and the commit built, since the
+ * cause is stored in every build record. Branch names are interned, as they
+ * repeat across the builds of a job.
  */
 public class GitLabMergeCause extends SCMTrigger.SCMTriggerCause {
 
+    /** @deprecated only read from build records written by earlier versions, see {@link #readResolve()} */
+    @Deprecated
     private GitLabMergeRequest mergeRequest;
 
-    public GitLabMergeCause(GitLabMergeRequest mergeRequest) {
-        this.mergeRequest = mergeRequest;
-    }
+    private Integer mergeRequestId;
+    private Integer mergeRequestIid;
+    private Integer sourceProjectId;
+    private Integer targetProjectId;
+    private String sourceBranch;
+    private String targetBranch;
+    private String lastCommitSHA1;
 
-    public GitLabMergeCause(GitLabMergeRequest mergeRequest, File logFile) throws IOException {
-        super(logFile);
-        this.mergeRequest = mergeRequest;
+    public GitLabMergeCause(GitLabMergeRequest mergeRequest) {
+        setMergeRequest(mergeRequest);
     }
 
     public GitLabMergeCause(GitLabMergeRequest mergeRequest, String pollingLog) {
         super(pollingLog);
-        this.mergeRequest = mergeRequest;
+        setMergeRequest(mergeRequest);
     }
 
+    private void setMergeRequest(GitLabMergeRequest mergeRequest) {
+        GitLabMergeRequest.ObjectAttributes attributes = mergeRequest.getObjectAttribute();
+        mergeRequestId = attributes.getId();
+        mergeRequestIid = attributes.getIid();
+        sourceProjectId = attributes.getSourceProjectId();
+        targetProjectId = attributes.getTargetProjectId();
+        sourceBranch = intern(attributes.getSourceBranch());
+        targetBranch = intern(attributes.getTargetBranch());
+        lastCommitSHA1 = attributes.getLastCommit() == null ? null : attributes.getLastCommit().getId();
+    }
+
+    protected Object readResolve() {
+        if (mergeRequest != null) {
+            if (mergeRequest.getObjectAttribute() != null) {
+                setMergeRequest(mergeRequest);
+            }
+            mergeRequest = null;
+        } else {
+            sourceBranch = intern(sourceBranch);
+            targetBranch = intern(targetBranch);
+        }
+        return this;
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    /**
+     * @return a merge request rebuilt from the fields kept by the cause; the title,
+     *         description, author and other details are no longer recorded
+     * @deprecated use the getters of the cause, such as {@link #getMergeRequestIid()}
+     */
+    @Deprecated
     public GitLabMergeRequest getMergeRequest() {
-        return mergeRequest;
+        GitLabMergeRequest.ObjectAttributes attributes = new GitLabMergeRequest.ObjectAttributes();
+        attributes.setId(mergeRequestId);
+        attributes.setIid(mergeRequestIid);
+        attributes.setSourceProjectId(sourceProjectId);
+        attributes.setTargetProjectId(targetProjectId);
+        attributes.setSourceBranch(sourceBranch);
+        attributes.setTargetBranch(targetBranch);
+        if (lastCommitSHA1 != null) {
+            GitLabMergeRequest.LastCommit lastCommit = new GitLabMergeRequest.LastCommit();
+            lastCommit.setId(lastCommitSHA1);
+            attributes.setLastCommit(lastCommit);
+        }
+        GitLabMergeRequest request = new GitLabMergeRequest();
+        request.setObject_kind("merge_request");
+        request.setObjectAttribute(attributes);
+        return request;
+    }
+
+    /**
+     * @return the id of the merge request, unique across projects
+     */
+    public Integer getMergeRequestId() {
+        return mergeRequestId;
+    }
+
+    /**
+     * @return the number of the merge request within its target project
+     */
+    public Integer getMergeRequestIid() {
+        return mergeRequestIid;
+    }
+
+    public Integer getSourceProjectId() {
+        return sourceProjectId;
+    }
+
+    public Integer getTargetProjectId() {
+        return targetProjectId;
+    }
+
+    public String getSourceBranch() {
+        return sourceBranch;
+    }
+
+    public String getTargetBranch() {
+        return targetBranch;
+    }
+
+    /**
+     * @return the last commit of the merge request when the build was triggered
+     */
+    public String getLastCommitSHA1() {
+        return lastCommitSHA1;
+    }
+
+    /**
+     * @return a one line account of the webhook event that triggered the build
+     */
+    public String getDeliverySummary() {
+        return String.format("GitLab merge request !%s event at %s, from branch %s of project %s into branch %s of project %s",
+                mergeRequestIid, lastCommitSHA1 == null ? "an unknown commit" : GitLabPushCause.abbreviate(lastCommitSHA1),
+                sourceBranch, sourceProjectId, targetBranch, targetProjectId);
     }
 
     @Override
     public String getShortDescription() {
-        return "GitLab Merge Request #" + this.mergeRequest.getObjectAttribute().getIid() + " : " + this.mergeRequest.getObjectAttribute().getSourceBranch() +
-                " => " + this.mergeRequest.getObjectAttribute().getTargetBranch();
+        return "GitLab Merge Request #" + mergeRequestIid + " : " + sourceBranch +
+                " => " + targetBranch;
     }
 
 }
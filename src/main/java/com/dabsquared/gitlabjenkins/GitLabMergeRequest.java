@@ -29,13 +29,12 @@ public class GitLabMergeRequest extends GitLabRequest {
     private String object_kind;
 
     private ObjectAttributes objectAttributes;
-    private GitlabProject sourceProject = null;
     
-    public GitlabProject getSourceProject (GitLab api) throws IOException {
-    	if (sourceProject == null) {
-    		sourceProject = api.instance().getProject(objectAttributes.sourceProjectId);
-    	}
-    	return sourceProject;
+    /**
+     * @return the source project, from the plugin-wide {@link GitLabProjectCache}
+     */
+    public GitlabProject getSourceProject() throws IOException {
+    	return GitLabPushTrigger.getDesc().getProjectCache().getProject(objectAttributes.sourceProjectId);
     }
 
     public String getObject_kind() {
@@ -78,12 +77,24 @@ public class GitLabMergeRequest extends GitLabRequest {
 
         private String title;
 
-        private Date createdAt;
+        /** Kept as sent, and only parsed when read. */
+        private String createdAt;
 
-        private Date updatedAt;
+        private String updatedAt;
+
+        private transient Date parsedCreatedAt;
+
+        private transient Date parsedUpdatedAt;
+
+        /** Whether the raw date has been parsed, so that a value that cannot be parsed is not parsed again. */
+        private transient boolean createdAtParsed;
+
+        private transient boolean updatedAtParsed;
 
         private String state;
 
+        private String action;
+
         private String mergeStatus;
 
         private Integer targetProjectId;
@@ -169,20 +180,76 @@ public class GitLabMergeRequest extends GitLabRequest {
             this.title = title;
         }
 
+        /**
+         * @return the creation date, or null if it is missing or in an unknown format
+         */
         public Date getCreatedAt() {
-            return createdAt;
+            if (!createdAtParsed) {
+                parsedCreatedAt = GitLabDates.parse(createdAt);
+                createdAtParsed = true;
+            }
+            return parsedCreatedAt;
         }
 
         public void setCreatedAt(Date createdAt) {
+            this.parsedCreatedAt = createdAt;
+            this.createdAt = null;
+            this.createdAtParsed = true;
+        }
+
+        /**
+         * Sets the creation date as sent by GitLab, to be parsed when it is first read.
+         */
+        void setRawCreatedAt(String createdAt) {
+            this.parsedCreatedAt = null;
             this.createdAt = createdAt;
+            this.createdAtParsed = false;
+        }
+
+        /**
+         * @return the creation date as sent by GitLab, or in ISO 8601 if it was set as a date
+         */
+        String getRawCreatedAt() {
+            if (createdAt == null && parsedCreatedAt != null) {
+                return GitLabDates.format(parsedCreatedAt);
+            }
+            return createdAt;
         }
 
+        /**
+         * @return the date of the last update, or null if it is missing or in an unknown format
+         */
         public Date getUpdatedAt() {
-            return updatedAt;
+            if (!updatedAtParsed) {
+                parsedUpdatedAt = GitLabDates.parse(updatedAt);
+                updatedAtParsed = true;
+            }
+            return parsedUpdatedAt;
         }
 
         public void setUpdatedAt(Date updatedAt) {
+            this.parsedUpdatedAt = updatedAt;
+            this.updatedAt = null;
+            this.updatedAtParsed = true;
+        }
+
+        /**
+         * Sets the date of the last update as sent by GitLab, to be parsed when it is first read.
+         */
+        void setRawUpdatedAt(String updatedAt) {
+            this.parsedUpdatedAt = null;
             this.updatedAt = updatedAt;
+            this.updatedAtParsed = false;
+        }
+
+        /**
+         * @return the date of the last update as sent by GitLab, or in ISO 8601 if it was set as a date
+         */
+        String getRawUpdatedAt() {
+            if (updatedAt == null && parsedUpdatedAt != null) {
+                return GitLabDates.format(parsedUpdatedAt);
+            }
+            return updatedAt;
         }
 
         public String getState() {
@@ -193,6 +260,14 @@ public class GitLabMergeRequest extends GitLabRequest {
             this.state = state;
         }
 
+        public String getAction() {
+            return action;
+        }
+
+        public void setAction(String action) {
+            this.action = action;
+        }
+
         public String getMergeStatus() {
             return mergeStatus;
         }
@@ -0,0 +1,254 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gitlab.api.models.GitlabMergeRequest;
+import org.gitlab.api.models.GitlabProject;
+
+/**
+ * Open merge requests of each GitLab project, by source project and source branch,
+ * so that a push can find the merge requests it updates without calling GitLab.
+ *
+ * The merge requests of a project are fetched from GitLab the first time the project
+ * is looked up. After that merge request webhooks keep them current, and
+ * {@link Resync} refetches every known project periodically to catch missed events.
+ */
+public class GitLabMergeRequestIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabMergeRequestIndex.class.getName());
+
+    private final ConcurrentMap<Integer, ProjectMergeRequests> projects = new ConcurrentHashMap<Integer, ProjectMergeRequests>();
+
+    /**
+     * @param targetProjectId the project the merge requests are opened in
+     * @return the open merge requests from the given source project and branch
+     */
+    public List<GitLabMergeRequest.ObjectAttributes> getOpenMergeRequests(Integer targetProjectId, Integer sourceProjectId, String sourceBranch) throws IOException {
+        ProjectMergeRequests mergeRequests = projects.get(targetProjectId);
+        if (mergeRequests == null) {
+            mergeRequests = load(targetProjectId);
+            ProjectMergeRequests existing = projects.putIfAbsent(targetProjectId, mergeRequests);
+            if (existing != null) {
+                mergeRequests = existing;
+            }
+        }
+        return mergeRequests.get(sourceProjectId, sourceBranch);
+    }
+
+    /**
+     * Applies a merge request webhook event. Projects that have not been looked up
+     * yet are left alone; they are fetched in full when first needed.
+     */
+    public void update(GitLabMergeRequest.ObjectAttributes attributes) {
+        if (attributes == null || attributes.getTargetProjectId() == null || attributes.getId() == null) {
+            return;
+        }
+        ProjectMergeRequests mergeRequests = projects.get(attributes.getTargetProjectId());
+        if (mergeRequests == null) {
+            return;
+        }
+        mergeRequests.apply(copyOf(attributes));
+    }
+
+    /**
+     * Refetches the open merge requests of every project looked up so far. Events
+     * applied while a project is being fetched are applied again to the fetched
+     * merge requests, so that they are not lost if GitLab answered before them.
+     */
+    public void resync() {
+        for (Integer projectId : projects.keySet()) {
+            ProjectMergeRequests current = projects.get(projectId);
+            if (current == null) {
+                continue;
+            }
+            current.startRecording();
+            ProjectMergeRequests loaded;
+            try {
+                loaded = load(projectId);
+            } catch (IOException e) {
+                current.stopRecording();
+                LOGGER.log(Level.WARNING, "Could not refresh open merge requests of project " + projectId, e);
+                continue;
+            }
+            current.replaceWith(loaded);
+            projects.replace(projectId, current, loaded);
+        }
+    }
+
+    public void clear() {
+        projects.clear();
+    }
+
+    private ProjectMergeRequests load(Integer projectId) throws IOException {
+        // TODO Replace this with a call to GitlabAPI.getOpenMergeRequests, once timols has deployed version 1.1.7
+        String tailUrl = GitlabProject.URL + "/" + projectId + GitlabMergeRequest.URL + "?state=opened&per_page=100";
+        List<GitlabMergeRequest> mergeRequests = GitLabPushTrigger.getDesc().getGitlab().instance().retrieve().getAll(tailUrl, GitlabMergeRequest[].class);
+
+        ProjectMergeRequests result = new ProjectMergeRequests();
+        for (GitlabMergeRequest mr : mergeRequests) {
+            GitLabMergeRequest.ObjectAttributes attributes = new GitLabMergeRequest.ObjectAttributes();
+            if (mr.getAssignee() != null)
+                attributes.setAssigneeId(mr.getAssignee().getId());
+            if (mr.getAuthor() != null)
+                attributes.setAuthorId(mr.getAuthor().getId());
+            attributes.setDescription(mr.getDescription());
+            attributes.setId(mr.getId());
+            attributes.setIid(mr.getIid());
+            attributes.setMergeStatus(mr.getState());
+            attributes.setState(mr.getState());
+            attributes.setSourceBranch(mr.getSourceBranch());
+            attributes.setSourceProjectId(mr.getSourceProjectId());
+            attributes.setTargetBranch(mr.getTargetBranch());
+            attributes.setTargetProjectId(projectId);
+            attributes.setTitle(mr.getTitle());
+            result.put(attributes);
+        }
+        LOGGER.log(Level.FINE, "Loaded {0} open merge requests of project {1}", new Object[]{mergeRequests.size(), projectId});
+        return result;
+    }
+
+    /**
+     * Keeps only what is needed to trigger a merge request build.
+     */
+    private static GitLabMergeRequest.ObjectAttributes copyOf(GitLabMergeRequest.ObjectAttributes source) {
+        GitLabMergeRequest.ObjectAttributes attributes = new GitLabMergeRequest.ObjectAttributes();
+        attributes.setAssigneeId(source.getAssigneeId());
+        attributes.setAuthorId(source.getAuthorId());
+        attributes.setDescription(source.getDescription());
+        attributes.setId(source.getId());
+        attributes.setIid(source.getIid());
+        attributes.setMergeStatus(source.getMergeStatus());
+        attributes.setState(source.getState());
+        attributes.setSourceBranch(source.getSourceBranch());
+        attributes.setSourceProjectId(source.getSourceProjectId());
+        attributes.setTargetBranch(source.getTargetBranch());
+        attributes.setTargetProjectId(source.getTargetProjectId());
+        attributes.setTitle(source.getTitle());
+        return attributes;
+    }
+
+    private static class ProjectMergeRequests {
+        /** Merge requests by source project and branch, then by id. */
+        private final Map<String, Map<Integer, GitLabMergeRequest.ObjectAttributes>> bySource = new HashMap<String, Map<Integer, GitLabMergeRequest.ObjectAttributes>>();
+        private final Map<Integer, String> sourceById = new HashMap<Integer, String>();
+        /** Events applied since a resync started fetching the project, or null. */
+        private List<GitLabMergeRequest.ObjectAttributes> recorded;
+        /** The instance that took over after a resync; later events are passed on to it. */
+        private ProjectMergeRequests replacement;
+
+        synchronized List<GitLabMergeRequest.ObjectAttributes> get(Integer sourceProjectId, String sourceBranch) {
+            Map<Integer, GitLabMergeRequest.ObjectAttributes> mergeRequests = bySource.get(key(sourceProjectId, sourceBranch));
+            if (mergeRequests == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<GitLabMergeRequest.ObjectAttributes>(mergeRequests.values());
+        }
+
+        /**
+         * Applies a merge request webhook event.
+         */
+        synchronized void apply(GitLabMergeRequest.ObjectAttributes attributes) {
+            if (replacement != null) {
+                replacement.apply(attributes);
+                return;
+            }
+            if (recorded != null) {
+                recorded.add(attributes);
+            }
+            String state = attributes.getState();
+            if ("opened".equals(state) || "reopened".equals(state)) {
+                put(attributes);
+            } else {
+                remove(attributes.getId());
+            }
+        }
+
+        synchronized void startRecording() {
+            recorded = new ArrayList<GitLabMergeRequest.ObjectAttributes>();
+        }
+
+        synchronized void stopRecording() {
+            recorded = null;
+        }
+
+        /**
+         * Applies the events recorded since {@link #startRecording()} to the
+         * freshly fetched merge requests, and passes later events on to them.
+         */
+        synchronized void replaceWith(ProjectMergeRequests loaded) {
+            if (recorded != null) {
+                for (GitLabMergeRequest.ObjectAttributes attributes : recorded) {
+                    loaded.apply(attributes);
+                }
+            }
+            recorded = null;
+            replacement = loaded;
+        }
+
+        synchronized void put(GitLabMergeRequest.ObjectAttributes attributes) {
+            remove(attributes.getId());
+            String key = key(attributes.getSourceProjectId(), attributes.getSourceBranch());
+            Map<Integer, GitLabMergeRequest.ObjectAttributes> mergeRequests = bySource.get(key);
+            if (mergeRequests == null) {
+                mergeRequests = new LinkedHashMap<Integer, GitLabMergeRequest.ObjectAttributes>();
+                bySource.put(key, mergeRequests);
+            }
+            mergeRequests.put(attributes.getId(), attributes);
+            sourceById.put(attributes.getId(), key);
+        }
+
+        synchronized void remove(Integer id) {
+            String key = sourceById.remove(id);
+            if (key != null) {
+                Map<Integer, GitLabMergeRequest.ObjectAttributes> mergeRequests = bySource.get(key);
+                mergeRequests.remove(id);
+                if (mergeRequests.isEmpty()) {
+                    bySource.remove(key);
+                }
+            }
+        }
+
+        private static String key(Integer sourceProjectId, String sourceBranch) {
+            return sourceProjectId + ":" + sourceBranch;
+        }
+    }
+
+    /**
+     * Periodically refetches the indexed projects from GitLab.
+     */
+    @Extension
+    public static class Resync extends AsyncPeriodicWork {
+
+        public Resync() {
+            super("GitLab open merge request resync");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(30);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            GitLabPushTrigger.DescriptorImpl descriptor = GitLabPushTrigger.getDesc();
+            if (descriptor != null && !descriptor.getGitlabHostUrl().isEmpty()) {
+                descriptor.getMergeRequestIndex().resync();
+            }
+        }
+    }
+}
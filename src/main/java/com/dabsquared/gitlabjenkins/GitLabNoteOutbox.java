@@ -0,0 +1,203 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+import org.gitlab.api.models.GitlabMergeRequest;
+
+/**
+ * Merge request notes waiting to be posted to GitLab. Each note is written to its
+ * own file under <code>JENKINS_HOME/gitlab-plugin/outbox</code> before it is
+ * posted by a background worker, so that neither a slow GitLab holds up build
+ * completion nor a GitLab outage or a Jenkins restart loses notes.
+ *
+ * Failed deliveries are retried with exponential backoff, from
+ * {@link #INITIAL_DELAY} up to {@link #MAX_DELAY}, and given up after
+ * {@link #MAX_ATTEMPTS} attempts or when the merge request no longer exists.
+ */
+public class GitLabNoteOutbox {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabNoteOutbox.class.getName());
+
+    private static final long INITIAL_DELAY = TimeUnit.SECONDS.toMillis(10);
+    private static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_ATTEMPTS = 20;
+
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2,
+            new NamingThreadFactory(new DaemonThreadFactory(), "GitLab note outbox"));
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Stores a note and schedules it for delivery.
+     *
+     * @param projectId the id of the project the merge request is opened in
+     * @param mergeRequestId the id (not iid) of the merge request
+     */
+    public void add(Integer projectId, Integer mergeRequestId, String body) {
+        Note note = new Note(projectId, mergeRequestId, body);
+        File file = new File(getDirectory(), System.currentTimeMillis() + "-" + sequence.incrementAndGet() + ".xml");
+        try {
+            new XmlFile(file).write(note);
+        } catch (IOException e) {
+            // still try to deliver it, only without surviving a restart
+            LOGGER.log(Level.WARNING, "Could not store note for merge request " + mergeRequestId + " in " + file, e);
+        }
+        depth.incrementAndGet();
+        executor.execute(new Delivery(file, note));
+    }
+
+    /**
+     * Schedules the notes left over from before the last restart.
+     */
+    public void load() {
+        File[] files = getDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.getName().endsWith(".xml")) {
+                continue;
+            }
+            try {
+                Note note = (Note) new XmlFile(file).read();
+                depth.incrementAndGet();
+                long delay = Math.max(0, note.nextAttemptAt - System.currentTimeMillis());
+                executor.schedule(new Delivery(file, note), delay, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not read pending merge request note " + file, e);
+            }
+        }
+        LOGGER.log(Level.FINE, "Loaded {0} pending merge request notes", depth.get());
+    }
+
+    /**
+     * @return the number of notes waiting to be posted
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the number of notes posted so far
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return the number of failed delivery attempts so far
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of notes given up on so far
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private static File getDirectory() {
+        File directory = new File(Jenkins.getInstance().getRootDir(), "gitlab-plugin/outbox");
+        directory.mkdirs();
+        return directory;
+    }
+
+    private static class Note {
+        private final Integer projectId;
+        private final Integer mergeRequestId;
+        private final String body;
+        private int attempts;
+        private long nextAttemptAt;
+
+        Note(Integer projectId, Integer mergeRequestId, String body) {
+            this.projectId = projectId;
+            this.mergeRequestId = mergeRequestId;
+            this.body = body;
+        }
+    }
+
+    private class Delivery implements Runnable {
+        private final File file;
+        private final Note note;
+
+        Delivery(File file, Note note) {
+            this.file = file;
+            this.note = note;
+        }
+
+        public void run() {
+            try {
+                // the ids are all createNote needs, so there is no need to fetch the merge request first
+                GitlabMergeRequest mergeRequest = new GitlabMergeRequest();
+                mergeRequest.setProjectId(note.projectId);
+                mergeRequest.setId(note.mergeRequestId);
+                GitLabPushTrigger.getDesc().getGitlab().instance().createNote(mergeRequest, note.body);
+                delivered.incrementAndGet();
+                remove();
+            } catch (FileNotFoundException e) {
+                failures.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Merge request {0} of project {1} no longer exists, dropping note", new Object[]{note.mergeRequestId, note.projectId});
+                drop();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                retry(e);
+            }
+        }
+
+        private void retry(Exception cause) {
+            note.attempts++;
+            if (note.attempts >= MAX_ATTEMPTS) {
+                LOGGER.log(Level.WARNING, "Giving up posting note on merge request " + note.mergeRequestId + " after " + note.attempts + " attempts", cause);
+                drop();
+                return;
+            }
+            long delay = Math.min(MAX_DELAY, INITIAL_DELAY << Math.min(note.attempts - 1, 20));
+            note.nextAttemptAt = System.currentTimeMillis() + delay;
+            LOGGER.log(Level.FINE, "Could not post note on merge request " + note.mergeRequestId + ", retrying in " + delay + " ms", cause);
+            try {
+                new XmlFile(file).write(note);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not update pending merge request note " + file, e);
+            }
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void drop() {
+            dropped.incrementAndGet();
+            remove();
+        }
+
+        private void remove() {
+            depth.decrementAndGet();
+            if (file.exists() && !file.delete()) {
+                LOGGER.log(Level.WARNING, "Could not delete delivered merge request note {0}", file);
+            }
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void loadPendingNotes() {
+        GitLabPushTrigger.getDesc().getNoteOutbox().load();
+    }
+}
@@ -0,0 +1,192 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.gitlab.api.models.GitlabBranch;
+import org.gitlab.api.models.GitlabProject;
+
+/**
+ * Cache of GitLab projects by id and by clone URL, and of their branch names,
+ * shared by every lookup in the plugin. Projects by id and branch names are
+ * bounded in size. Entries are refetched from GitLab once they are older than
+ * {@link #TTL}.
+ *
+ * Clone URLs are normalised so that the SSH and HTTP URLs of a project are the
+ * same key, see {@link #normalizeUrl(String)}. As GitLab cannot look a project
+ * up by URL, the URL index holds every project visible to the API token and is
+ * refreshed as a whole; it is not bounded, so that it never evicts the projects
+ * it has just listed.
+ */
+public class GitLabProjectCache {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_PROJECTS = 1000;
+
+    private final GitLab gitlab;
+    private final Map<Integer, Entry> byId = new Cache<Integer>();
+    /** Every visible project by normalised clone URL, replaced as a whole on refresh. */
+    private Map<String, GitlabProject> byUrl;
+    private long byUrlLoadedAt;
+    private final Map<Integer, Entry> branches = new Cache<Integer>();
+
+    public GitLabProjectCache(GitLab gitlab) {
+        this.gitlab = gitlab;
+    }
+
+    public GitlabProject getProject(Integer id) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = byId.get(id);
+        }
+        if (entry == null || entry.isExpired()) {
+            entry = new Entry(gitlab.instance().getProject(id));
+            put(entry);
+        }
+        return entry.project;
+    }
+
+    /**
+     * @param url the SSH or HTTP clone URL of the project
+     * @return the project, or null if no project visible to the API token has that URL
+     */
+    public GitlabProject getProjectByUrl(String url) throws IOException {
+        String key = normalizeUrl(url);
+        Map<String, GitlabProject> projectsByUrl;
+        synchronized (this) {
+            projectsByUrl = byUrl;
+            if (projectsByUrl != null && System.currentTimeMillis() - byUrlLoadedAt > TTL) {
+                projectsByUrl = null;
+            }
+        }
+        if (projectsByUrl == null) {
+            // unknown URLs are answered from the same listing, so they do not list every project each time
+            List<GitlabProject> projects = gitlab.instance().getProjects();
+            projectsByUrl = new HashMap<String, GitlabProject>(projects.size() * 4);
+            for (GitlabProject project : projects) {
+                if (project.getSshUrl() != null) {
+                    projectsByUrl.put(normalizeUrl(project.getSshUrl()), project);
+                }
+                if (project.getHttpUrl() != null) {
+                    projectsByUrl.put(normalizeUrl(project.getHttpUrl()), project);
+                }
+            }
+            synchronized (this) {
+                byUrl = projectsByUrl;
+                byUrlLoadedAt = System.currentTimeMillis();
+            }
+        }
+        GitlabProject project = projectsByUrl.get(key);
+        if (project != null) {
+            put(new Entry(project));
+        }
+        return project;
+    }
+
+    /**
+     * @return the names of the project's branches, sorted
+     */
+    public List<String> getBranchNames(GitlabProject project) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = branches.get(project.getId());
+        }
+        if (entry == null || entry.isExpired()) {
+            List<String> names = new ArrayList<String>();
+            for (GitlabBranch branch : gitlab.instance().getBranches(project)) {
+                names.add(branch.getName());
+            }
+            Collections.sort(names);
+            entry = new Entry(project, Collections.unmodifiableList(names));
+            synchronized (this) {
+                branches.put(project.getId(), entry);
+            }
+        }
+        return entry.branchNames;
+    }
+
+    public synchronized void clear() {
+        byId.clear();
+        byUrl = null;
+        branches.clear();
+    }
+
+    private synchronized void put(Entry entry) {
+        byId.put(entry.project.getId(), entry);
+    }
+
+    /**
+     * Reduces a clone URL to <code>host/namespace/project</code>: lower case, without
+     * scheme, user, port and trailing <code>.git</code>, and with the scp-like
+     * <code>host:path</code> syntax of SSH URLs turned into <code>host/path</code>.
+     */
+    static String normalizeUrl(String url) {
+        if (url == null) {
+            return "";
+        }
+        String result = url.trim().toLowerCase(Locale.ENGLISH);
+        int scheme = result.indexOf("://");
+        if (scheme >= 0) {
+            result = result.substring(scheme + 3);
+        }
+        int slash = result.indexOf('/');
+        int at = result.indexOf('@');
+        if (at >= 0 && (slash < 0 || at < slash)) {
+            result = result.substring(at + 1);
+            slash = result.indexOf('/');
+        }
+        int colon = result.indexOf(':');
+        if (colon >= 0 && (slash < 0 || colon < slash)) {
+            String port = slash < 0 ? result.substring(colon + 1) : result.substring(colon + 1, slash);
+            if (port.matches("\\d*") && slash >= 0) {
+                result = result.substring(0, colon) + result.substring(slash);
+            } else {
+                result = result.substring(0, colon) + '/' + result.substring(colon + 1);
+            }
+        }
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        if (result.endsWith(".git")) {
+            result = result.substring(0, result.length() - 4);
+        }
+        return result;
+    }
+
+    private static class Entry {
+        private final GitlabProject project;
+        private final List<String> branchNames;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(GitlabProject project) {
+            this(project, null);
+        }
+
+        Entry(GitlabProject project, List<String> branchNames) {
+            this.project = project;
+            this.branchNames = branchNames;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - loadedAt > TTL;
+        }
+    }
+
+    private static class Cache<K> extends LinkedHashMap<K, Entry> {
+        Cache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry> eldest) {
+            return size() > MAX_PROJECTS;
+        }
+    }
+}
@@ -2,30 +2,75 @@ package com.dabsquared.gitlabjenkins;
 
 import hudson.triggers.SCMTrigger;
 
-import java.io.File;
-import java.io.IOException;
-
 /**
  * Created by daniel on 6/8/14.
  */
 public class GitLabPushCause extends SCMTrigger.SCMTriggerCause {
 
     private final String pushedBy;
+    private Integer projectId;
+    private String branch;
+    private String commitSHA1;
 
     public GitLabPushCause(String pushedBy) {
         this.pushedBy = pushedBy;
     }
 
-    public GitLabPushCause(String pushedBy, File logFile) throws IOException {
-        super(logFile);
-        this.pushedBy = pushedBy;
-    }
-
     public GitLabPushCause(String pushedBy, String pollingLog) {
         super(pollingLog);
         this.pushedBy = pushedBy;
     }
 
+    public GitLabPushCause(String pushedBy, Integer projectId, String branch, String commitSHA1) {
+        this(pushedBy);
+        this.projectId = projectId;
+        this.branch = branch == null ? null : branch.intern();
+        this.commitSHA1 = commitSHA1;
+    }
+
+    protected Object readResolve() {
+        if (branch != null) {
+            branch = branch.intern();
+        }
+        return this;
+    }
+
+    /**
+     * @return the id of the GitLab project pushed to, or null for builds triggered before it was recorded
+     */
+    public Integer getProjectId() {
+        return projectId;
+    }
+
+    /**
+     * @return the branch pushed to, or null for builds triggered before it was recorded
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return the commit pushed, or null for builds triggered before it was recorded
+     */
+    public String getCommitSHA1() {
+        return commitSHA1;
+    }
+
+    /**
+     * @return a one line account of the webhook event that triggered the build
+     */
+    public String getDeliverySummary() {
+        if (commitSHA1 == null) {
+            return "GitLab push event";
+        }
+        return String.format("GitLab push of %s to branch %s of project %s",
+                abbreviate(commitSHA1), branch, projectId);
+    }
+
+    static String abbreviate(String sha) {
+        return sha.length() > 8 ? sha.substring(0, 8) : sha;
+    }
+
     @Override
     public String getShortDescription() {
         if (pushedBy == null) {
@@ -2,28 +2,33 @@ package com.dabsquared.gitlabjenkins;
 
 import hudson.Extension;
 import hudson.Util;
+import hudson.XmlFile;
 import hudson.model.Action;
+import hudson.model.AutoCompletionCandidates;
 import hudson.model.Item;
 import hudson.model.ParameterValue;
 import hudson.model.Result;
+import hudson.model.Saveable;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Cause;
+import hudson.model.CauseAction;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
 import hudson.model.StringParameterValue;
+import hudson.model.listeners.SaveableListener;
 import hudson.plugins.git.RevisionParameterAction;
 import hudson.plugins.git.GitSCM;
 import hudson.scm.SCM;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
 import hudson.util.FormValidation;
-import hudson.util.SequentialExecutionQueue;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,10 +38,12 @@ import java.util.logging.Logger;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 
+import com.google.common.base.Joiner;
+
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.URIish;
-import org.gitlab.api.models.GitlabBranch;
 import org.gitlab.api.models.GitlabProject;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -57,18 +64,31 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
     private boolean addVoteOnMergeRequest = true;
     private boolean allowAllBranches = false;
 
+    /** @deprecated replaced by {@link #allowedBranchesSpec}, only read from older configurations */
+    @Deprecated
     private List<String> allowedBranches;
+    private String allowedBranchesSpec;
+    private String excludedBranchesSpec;
+    private transient GitLabBranchMatcher allowedBranchMatcher;
+    private transient GitLabBranchMatcher excludedBranchMatcher;
+    private transient volatile SourceRepository sourceRepository;
 
     // compatibility with earlier plugins
     public Object readResolve() {
-        if (null == allowedBranches) {
-        	allowedBranches = new ArrayList<String>();
-        }               
+        if (null == allowedBranchesSpec) {
+        	allowedBranchesSpec = allowedBranches == null ? "" : Joiner.on(", ").join(allowedBranches);
+        	allowedBranches = null;
+        }
+        if (null == excludedBranchesSpec) {
+        	excludedBranchesSpec = "";
+        }
+        allowedBranchMatcher = new GitLabBranchMatcher(allowedBranchesSpec);
+        excludedBranchMatcher = new GitLabBranchMatcher(excludedBranchesSpec);
         return this;
     }
 
     @DataBoundConstructor
-    public GitLabPushTrigger(boolean triggerOnPush, boolean triggerOnMergeRequest, boolean triggerOpenMergeRequestOnPush, boolean ciSkip, boolean setBuildDescription, boolean addNoteOnMergeRequest, boolean addVoteOnMergeRequest, boolean allowAllBranches, List<String> allowedBranches) {
+    public GitLabPushTrigger(boolean triggerOnPush, boolean triggerOnMergeRequest, boolean triggerOpenMergeRequestOnPush, boolean ciSkip, boolean setBuildDescription, boolean addNoteOnMergeRequest, boolean addVoteOnMergeRequest, boolean allowAllBranches, String allowedBranchesSpec, String excludedBranchesSpec) {
         this.triggerOnPush = triggerOnPush;
         this.triggerOnMergeRequest = triggerOnMergeRequest;
         this.triggerOpenMergeRequestOnPush = triggerOpenMergeRequestOnPush;
@@ -77,7 +97,43 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
 	this.addNoteOnMergeRequest = addNoteOnMergeRequest;
         this.addVoteOnMergeRequest = addVoteOnMergeRequest;
         this.allowAllBranches = allowAllBranches;
-        this.allowedBranches = allowedBranches;
+        this.allowedBranchesSpec = Util.fixNull(allowedBranchesSpec);
+        this.excludedBranchesSpec = Util.fixNull(excludedBranchesSpec);
+        this.allowedBranchMatcher = new GitLabBranchMatcher(this.allowedBranchesSpec);
+        this.excludedBranchMatcher = new GitLabBranchMatcher(this.excludedBranchesSpec);
+    }
+
+    @Override
+    public void start(AbstractProject<?, ?> project, boolean newInstance) {
+        super.start(project, newInstance);
+        sourceRepository = null;
+    }
+
+    /**
+     * @return the default source repository of the job, read from its Git configuration
+     *         once and kept until the job is saved again
+     */
+    SourceRepository getSourceRepository() {
+        SourceRepository result = sourceRepository;
+        if (result == null) {
+            URIish url = getDesc().getSourceRepoURLDefault(job);
+            result = new SourceRepository(getDesc().getSourceRepoNameDefault(job), url == null ? null : url.toString());
+            sourceRepository = result;
+        }
+        return result;
+    }
+
+    /**
+     * Name and URL of the last Git repository of a job, either may be null.
+     */
+    static class SourceRepository {
+        final String name;
+        final String url;
+
+        SourceRepository(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
     }
 
     public boolean getTriggerOnPush() {
@@ -112,14 +168,27 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
         return ciSkip;
     }
 
-    public List<String> getAllowedBranches() {
-    	return allowedBranches;
+    public String getAllowedBranchesSpec() {
+    	return allowedBranchesSpec;
+    }
+
+    public String getExcludedBranchesSpec() {
+    	return excludedBranchesSpec;
+    }
+
+    /**
+     * @return true if pushes to the branch may trigger a build
+     */
+    boolean isBranchAllowed(String branch) {
+    	if (allowAllBranches) {
+    		return true;
+    	}
+    	return (allowedBranchMatcher.isEmpty() || allowedBranchMatcher.matches(branch)) && !excludedBranchMatcher.matches(branch);
     }
 
     public void onPost(final GitLabPushRequest req) {
-    	boolean allowBuild = allowAllBranches || (allowedBranches.isEmpty() || allowedBranches.contains(getSourceBranch(req)));
-    	if (triggerOnPush && (allowBuild)) {
-            getDescriptor().queue.execute(new Runnable() {
+    	if (triggerOnPush && isBranchAllowed(getSourceBranch(req))) {
+            getDescriptor().queue.execute(job.getFullName(), new Runnable() {
 
                 public void run() {
             		LOGGER.log(Level.INFO, "{0} triggered for push.", job.getName());
@@ -127,27 +196,31 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
             		String name = " #" + job.getNextBuildNumber();
             		GitLabPushCause cause = createGitLabPushCause(req);
             		Action[] actions = createActions(req);
+            		if (actions == null) {
+            			return;
+            		}
+            		if (retargetQueuedBuild(getSourceBranch(req), cause, actions)) {
+            			LOGGER.log(Level.INFO, "GitLab Push Request detected in {0}. Queued build of branch {1} retargeted to the new push", new String[]{job.getName(), getSourceBranch(req)});
+            			publishPending(cause.getProjectId(), cause.getCommitSHA1());
+            			return;
+            		}
             		if (job.scheduleBuild(job.getQuietPeriod(), cause, actions)) {
             			LOGGER.log(Level.INFO, "GitLab Push Request detected in {0}. Triggering {1}", new String[]{job.getName(), name});
+            			publishPending(cause.getProjectId(), cause.getCommitSHA1());
             		} else {
             			LOGGER.log(Level.INFO, "GitLab Push Request detected in {0}. Job is already in the queue.", job.getName());
             		}
                 }
 
                 private GitLabPushCause createGitLabPushCause(GitLabPushRequest req) {
-                    GitLabPushCause cause;
                     String triggeredByUser;
                     if (req.getCommits().size() > 0){
                         triggeredByUser = req.getCommits().get(0).getAuthor().getName();
                     } else {
                         triggeredByUser = req.getUser_name();
                     }
-                    try {
-                        cause = new GitLabPushCause(triggeredByUser, getLogFile());
-                    } catch (IOException ex) {
-                        cause = new GitLabPushCause(triggeredByUser);
-                    }
-                    return cause;
+                    String commitSHA1 = req.getLastCommit() != null ? req.getLastCommit().getId() : req.getCheckout_sha();
+                    return new GitLabPushCause(triggeredByUser, req.getProject_id(), getSourceBranch(req), commitSHA1);
                 }
 
                 private Action[] createActions(GitLabPushRequest req) {
@@ -162,9 +235,13 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
                     values.put("gitlabTargetBranch", new StringParameterValue("gitlabTargetBranch", branch));
                     values.put("gitlabBranch", new StringParameterValue("gitlabBranch", branch));
 
-                    LOGGER.log(Level.INFO, "Trying to get name and URL for job: {0} using project {1} (push)", new String[]{job.getName(), job.getRootProject().getName()});
-                    values.put("gitlabSourceRepoName", new StringParameterValue("gitlabSourceRepoName", getDesc().getSourceRepoNameDefault(job)));
-                	values.put("gitlabSourceRepoURL", new StringParameterValue("gitlabSourceRepoURL", getDesc().getSourceRepoURLDefault(job).toString()));
+                    SourceRepository sourceRepository = getSourceRepository();
+                    if (sourceRepository.name != null) {
+                        values.put("gitlabSourceRepoName", new StringParameterValue("gitlabSourceRepoName", sourceRepository.name));
+                    }
+                    if (sourceRepository.url != null) {
+                        values.put("gitlabSourceRepoURL", new StringParameterValue("gitlabSourceRepoURL", sourceRepository.url));
+                    }
                 	
                     List<ParameterValue> listValues = new ArrayList<ParameterValue>(values.values());
 
@@ -194,28 +271,24 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
 
     public void onPost(final GitLabMergeRequest req) {
     	if (triggerOnMergeRequest) {
-    		getDescriptor().queue.execute(new Runnable() {
+    		// striped by merge request, so that the events of a merge request keep their order
+    		// while the builds of different merge requests are set up in parallel
+    		String key = job.getFullName() + "!" + req.getObjectAttribute().getIid();
+    		getDescriptor().queue.execute(key, new Runnable() {
                 public void run() {
 	                LOGGER.log(Level.INFO, "{0} triggered for merge request.", job.getName());
 	                String name = " #" + job.getNextBuildNumber();
-	                GitLabMergeCause cause = createGitLabMergeCause(req);
+	                GitLabMergeCause cause = new GitLabMergeCause(req);
 	                Action[] actions = createActions(req);
 	                if (job.scheduleBuild(job.getQuietPeriod(), cause, actions)) {
 	                    LOGGER.log(Level.INFO, "GitLab Merge Request detected in {0}. Triggering {1}", new String[]{job.getName(), name});
+	                    GitLabMergeRequest.ObjectAttributes attributes = req.getObjectAttribute();
+	                    publishPending(attributes.getSourceProjectId(), attributes.getLastCommit() == null ? null : attributes.getLastCommit().getId());
 	                } else {
 	                    LOGGER.log(Level.INFO, "GitLab Merge Request detected in {0}. Job is already in the queue.", job.getName());
 	                }
                 }
 
-                private GitLabMergeCause createGitLabMergeCause(GitLabMergeRequest req) {
-                    GitLabMergeCause cause;
-                    try {
-                        cause = new GitLabMergeCause(req, getLogFile());
-                    } catch (IOException ex) {
-                        cause = new GitLabMergeCause(req);
-                    }
-                    return cause;
-                }
 
                 private Action[] createActions(GitLabMergeRequest req) {
                     List<Action> actions = new ArrayList<Action>();
@@ -224,22 +297,27 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
                     values.put("gitlabSourceBranch", new StringParameterValue("gitlabSourceBranch", getSourceBranch(req)));
                     values.put("gitlabTargetBranch", new StringParameterValue("gitlabTargetBranch", req.getObjectAttribute().getTargetBranch()));
                     
-                    LOGGER.log(Level.INFO, "Trying to get name and URL for job: {0} using project {1}", new String[]{job.getName(), getDesc().project.getName()});
-                    String sourceRepoName = getDesc().getSourceRepoNameDefault(job);
-                    String sourceRepoURL = getDesc().getSourceRepoURLDefault(job).toString();
+                    SourceRepository sourceRepository = getSourceRepository();
+                    String sourceRepoName = sourceRepository.name;
+                    String sourceRepoURL = sourceRepository.url;
                     
                     if (!getDescriptor().getGitlabHostUrl().isEmpty()) {                                        
                     	// Get source repository if communication to Gitlab is possible
                     	try {
-                        	sourceRepoName = req.getSourceProject(getDesc().getGitlab()).getPathWithNamespace();    
-                        	sourceRepoURL = req.getSourceProject(getDesc().getGitlab()).getSshUrl();
+                        	GitlabProject sourceProject = req.getSourceProject();
+                        	sourceRepoName = sourceProject.getPathWithNamespace();
+                        	sourceRepoURL = sourceProject.getSshUrl();
                         } catch (IOException ex) {
                         	LOGGER.log(Level.WARNING, "Could not fetch source project''s data from Gitlab. '('{0}':' {1}')'", new String[]{ex.toString(), ex.getMessage()});                        	
                         }
                     }
                     
-                    values.put("gitlabSourceRepoName", new StringParameterValue("gitlabSourceRepoName", sourceRepoName));
-                	values.put("gitlabSourceRepoURL", new StringParameterValue("gitlabSourceRepoURL", sourceRepoURL));
+                    if (sourceRepoName != null) {
+                        values.put("gitlabSourceRepoName", new StringParameterValue("gitlabSourceRepoName", sourceRepoName));
+                    }
+                    if (sourceRepoURL != null) {
+                        values.put("gitlabSourceRepoURL", new StringParameterValue("gitlabSourceRepoURL", sourceRepoURL));
+                    }
 
                     List<ParameterValue> listValues = new ArrayList<ParameterValue>(values.values());
 
@@ -256,6 +334,79 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
     	}
     }
     
+    private void publishPending(Integer projectId, String commitSHA1) {
+        publishQueued(projectId, commitSHA1, GitLabCommitStatusPublisher.PENDING);
+    }
+
+    private void publishQueued(Integer projectId, String commitSHA1, String state) {
+        if (getDescriptor().getPublishCommitStatus()) {
+            getDescriptor().getStatusPublisher().publish(projectId, commitSHA1, state,
+                    Jenkins.getInstance().getRootUrl() + job.getUrl());
+        }
+    }
+
+    /**
+     * Coalesces pushes to the same branch: if a push build of the branch is still
+     * waiting out its quiet period, it is pointed at the newest push, by replacing
+     * its revision and parameters and adding the new cause, instead of scheduling
+     * another build. The commit it no longer builds was reported pending, so it
+     * is reported canceled.
+     *
+     * @return true if a queued build was retargeted
+     */
+    private boolean retargetQueuedBuild(String branch, GitLabPushCause cause, Action[] actions) {
+        Queue queue = Jenkins.getInstance().getQueue();
+        String superseded = null;
+        boolean retargeted = false;
+        synchronized (queue) {
+            for (Queue.Item item : queue.getItems(job)) {
+                if (!(item instanceof Queue.WaitingItem) || !isPushBuildOf(item, branch)) {
+                    continue;
+                }
+                RevisionParameterAction revision = item.getAction(RevisionParameterAction.class);
+                superseded = revision == null ? null : revision.commit;
+                List<Action> itemActions = item.getActions();
+                for (Action action : actions) {
+                    Action existing = item.getAction(action.getClass());
+                    if (existing != null) {
+                        itemActions.remove(existing);
+                    }
+                    itemActions.add(action);
+                }
+                CauseAction causeAction = item.getAction(CauseAction.class);
+                List<Cause> causes = new ArrayList<Cause>();
+                if (causeAction != null) {
+                    causes.addAll(causeAction.getCauses());
+                    itemActions.remove(causeAction);
+                }
+                causes.add(cause);
+                itemActions.add(new CauseAction(causes));
+                retargeted = true;
+                break;
+            }
+        }
+        if (superseded != null && !superseded.equals(cause.getCommitSHA1())) {
+            publishQueued(cause.getProjectId(), superseded, GitLabCommitStatusPublisher.CANCELED);
+        }
+        return retargeted;
+    }
+
+    private boolean isPushBuildOf(Queue.Item item, String branch) {
+        boolean pushCause = false;
+        for (Cause cause : item.getCauses()) {
+            pushCause |= cause instanceof GitLabPushCause;
+        }
+        ParametersAction params = item.getAction(ParametersAction.class);
+        if (!pushCause || params == null) {
+            return false;
+        }
+        ParameterValue sourceBranch = params.getParameter("gitlabSourceBranch");
+        ParameterValue targetBranch = params.getParameter("gitlabTargetBranch");
+        return sourceBranch instanceof StringParameterValue && targetBranch instanceof StringParameterValue
+                && branch.equals(((StringParameterValue) sourceBranch).value)
+                && branch.equals(((StringParameterValue) targetBranch).value);
+    }
+
     private Map<String, ParameterValue> getDefaultParameters() {
         Map<String, ParameterValue> values = new HashMap<String, ParameterValue>();
         ParametersDefinitionProperty definitionProperty = job.getProperty(ParametersDefinitionProperty.class);
@@ -308,14 +459,7 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
             String buildUrl = Jenkins.getInstance().getRootUrl() + abstractBuild.getUrl();
             msg.append("\n\nResults available at: ")
                     .append("[").append("Jenkins").append("](").append(buildUrl).append(")");
-            try {
-                GitlabProject proj = new GitlabProject();
-                proj.setId(cause.getMergeRequest().getObjectAttribute().getTargetProjectId());
-                org.gitlab.api.models.GitlabMergeRequest mr = this.getDescriptor().getGitlab().instance().getMergeRequest(proj,cause.getMergeRequest().getObjectAttribute().getId());
-                this.getDescriptor().getGitlab().instance().createNote(mr,msg.toString());
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            getDescriptor().getNoteOutbox().add(cause.getTargetProjectId(), cause.getMergeRequestId(), msg.toString());
         }
 
     }
@@ -327,7 +471,10 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
     private String getSourceBranch(GitLabRequest req) {
     	String result = null;
     	if (req instanceof GitLabPushRequest) {
-    		result = ((GitLabPushRequest)req).getRef().replaceAll("refs/heads/", "");
+    		result = ((GitLabPushRequest)req).getRef();
+    		if (result.startsWith("refs/heads/")) {
+    			result = result.substring("refs/heads/".length());
+    		}
     	} else {
     		result = ((GitLabMergeRequest)req).getObjectAttribute().getSourceBranch();
     	}
@@ -344,24 +491,54 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
         return DescriptorImpl.get();
     }
 
-    public File getLogFile() {
-        return new File(job.getRootDir(), "gitlab-polling.log");
-    }    
+    /**
+     * Forgets the cached source repository of a job when its configuration is saved.
+     */
+    @Extension
+    public static class SourceRepositoryInvalidator extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof AbstractProject) {
+                GitLabPushTrigger trigger = ((AbstractProject<?, ?>) o).getTrigger(GitLabPushTrigger.class);
+                if (trigger != null) {
+                    trigger.sourceRepository = null;
+                }
+            }
+        }
+    }
 
     @Extension
     public static class DescriptorImpl extends TriggerDescriptor {
 
+        private static final int MAX_BRANCH_SUGGESTIONS = 50;
+
         AbstractProject project;
         private String gitlabApiToken;
         private String gitlabHostUrl = "";
         private boolean ignoreCertificateErrors = false;
-        private List<String> projectBranches = null;
+        private boolean asyncWebHooks = false;
+        private int webHookWorkers = 2;
+        private int webHookQueueCapacity = 500;
+        private int triggerThreads = 4;
+        private boolean publishCommitStatus = false;
+        private boolean statusPollingEnabled = true;
+        private String ciSkipMarkers = GitLabCiSkipMatcher.DEFAULT_MARKERS;
+        private GitLabCiSkipMatcher.Policy ciSkipPolicy = GitLabCiSkipMatcher.Policy.ANY;
         
-        private transient final SequentialExecutionQueue queue = new SequentialExecutionQueue(Jenkins.MasterComputer.threadPoolForRemoting);
-        private transient GitLab gitlab;
+        private transient StripedExecutionQueue queue;
+        private transient volatile GitLabCiSkipMatcher ciSkipMatcher;
+        private transient GitLabWebHookQueue webHookQueue;
+        private transient final GitLab gitlab = new GitLab();
+        private transient final GitLabMergeRequestIndex mergeRequestIndex = new GitLabMergeRequestIndex();
+        private transient final GitLabProjectCache projectCache = new GitLabProjectCache(gitlab);
+        private transient final GitLabNoteOutbox noteOutbox = new GitLabNoteOutbox();
+        private transient final GitLabCommitStatusPublisher statusPublisher = new GitLabCommitStatusPublisher();
 
         public DescriptorImpl() {
         	load();
+        	webHookQueue = new GitLabWebHookQueue(webHookWorkers, webHookQueueCapacity);
+        	queue = new StripedExecutionQueue("GitLab trigger", triggerThreads);
+        	ciSkipMatcher = new GitLabCiSkipMatcher(ciSkipMarkers);
         }
         
         @Override
@@ -405,60 +582,105 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
 
         @Override
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
+            String oldApiToken = gitlabApiToken;
+            String oldHostUrl = gitlabHostUrl;
+            boolean oldIgnoreCertificateErrors = ignoreCertificateErrors;
             gitlabApiToken = formData.getString("gitlabApiToken");
             gitlabHostUrl = formData.getString("gitlabHostUrl");
             ignoreCertificateErrors = formData.getBoolean("ignoreCertificateErrors");
+            asyncWebHooks = formData.getBoolean("asyncWebHooks");
+            webHookWorkers = Math.max(1, formData.optInt("webHookWorkers", webHookWorkers));
+            webHookQueueCapacity = Math.max(1, formData.optInt("webHookQueueCapacity", webHookQueueCapacity));
+            triggerThreads = Math.max(1, formData.optInt("triggerThreads", triggerThreads));
+            publishCommitStatus = formData.optBoolean("publishCommitStatus");
+            statusPollingEnabled = formData.optBoolean("statusPollingEnabled", true);
+            ciSkipMarkers = formData.optString("ciSkipMarkers", GitLabCiSkipMatcher.DEFAULT_MARKERS);
+            ciSkipPolicy = GitLabCiSkipMatcher.Policy.valueOf(formData.optString("ciSkipPolicy", GitLabCiSkipMatcher.Policy.ANY.name()));
+            ciSkipMatcher = new GitLabCiSkipMatcher(ciSkipMarkers);
             save();
-            gitlab = new GitLab();
+            webHookQueue.configure(webHookWorkers, webHookQueueCapacity);
+            queue.setThreads(triggerThreads);
+            if (!gitlabHostUrl.equals(oldHostUrl) || !gitlabApiToken.equals(oldApiToken)
+                    || ignoreCertificateErrors != oldIgnoreCertificateErrors) {
+                gitlab.reset();
+                mergeRequestIndex.clear();
+                projectCache.clear();
+            }
             return super.configure(req, formData);
         }       
         
-        public List<String> getProjectBranches() {        	
-        	projectBranches = new ArrayList<String>();
+        /**
+         * Suggests branches of the job's GitLab project for the branch filter, from the
+         * branch list cached by {@link GitLabProjectCache}. Only the first
+         * {@link #MAX_BRANCH_SUGGESTIONS} branches starting with the typed prefix are
+         * returned, so that repositories with thousands of branches stay responsive.
+         * Only users who may configure the job get suggestions, as they make the
+         * controller call GitLab.
+         */
+        public AutoCompletionCandidates doAutoCompleteAllowedBranchesSpec(@AncestorInPath AbstractProject job, @QueryParameter String value) {
+        	AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+        	if (job == null) {
+        		return candidates;
+        	}
+        	job.checkPermission(Item.CONFIGURE);
+        	String prefix = Util.fixNull(value).trim();
+        	List<String> branches = getProjectBranches(job);
+        	int index = Collections.binarySearch(branches, prefix);
+        	for (int i = index < 0 ? -index - 1 : index;
+        			i < branches.size() && branches.get(i).startsWith(prefix) && candidates.getValues().size() < MAX_BRANCH_SUGGESTIONS; i++) {
+        		candidates.add(branches.get(i));
+        	}
+        	return candidates;
+        }
+
+        public AutoCompletionCandidates doAutoCompleteExcludedBranchesSpec(@AncestorInPath AbstractProject job, @QueryParameter String value) {
+        	return doAutoCompleteAllowedBranchesSpec(job, value);
+        }
+
+        public FormValidation doCheckAllowedBranchesSpec(@QueryParameter String value) {
+        	List<String> errors = GitLabBranchMatcher.validate(value);
+        	if (errors.isEmpty()) {
+        		return FormValidation.ok();
+        	}
+        	return FormValidation.error("Invalid regular expression, ignored: " + Joiner.on("; ").join(errors));
+        }
+
+        public FormValidation doCheckExcludedBranchesSpec(@QueryParameter String value) {
+        	return doCheckAllowedBranchesSpec(value);
+        }
+
+        /**
+         * @return the sorted branch names of the GitLab project matching the job's repository URL
+         */
+        public List<String> getProjectBranches(AbstractProject job) {
         	try {
-            	/* TODO until java-gitlab-api v1.1.5 is released,
-            		cannot search projects by namespace/name
-            		For now getting project id before getting project branches
-            	 */
-        		URIish sourceRepository = getSourceRepoURLDefault(project);
+        		URIish sourceRepository = job == null ? null : getSourceRepoURLDefault(job);
         		if (!gitlabHostUrl.isEmpty() && (null != sourceRepository)) {
-        			List<GitlabProject> projects = getGitlab().instance().getProjects();
-        			for (GitlabProject project : projects) {
-						if(project.getSshUrl().equalsIgnoreCase(sourceRepository.toString()) ||
-							project.getHttpUrl().equalsIgnoreCase(sourceRepository.toString())){
-							//Get all branches of project
-							List<GitlabBranch> branches = getGitlab().instance().getBranches(project);
-							for (GitlabBranch branch : branches){
-								projectBranches.add(branch.getName());
-							}
-							break;
-						}					
-					}    			
-        		}				
+        			GitlabProject gitlabProject = projectCache.getProjectByUrl(sourceRepository.toString());
+        			if (gitlabProject != null) {
+        				return projectCache.getBranchNames(gitlabProject);
+        			}
+        		}
 			} catch (Exception ex) {
 				LOGGER.log(Level.WARNING, "Could not fetch source project''s data from Gitlab. '('{0}':' {1}')'", new String[]{ex.toString(), ex.getMessage()});
 			}
 
-        	return projectBranches;
+        	return Collections.emptyList();
         }
         
         /**
          * Get the URL of the first declared repository in the project configuration.
          * Use this as default source repository url.
          * 
-         * @return URIish the default value of the source repository url
+         * @return URIish the default value of the source repository url, or null if the project does not use Git
          */
         protected URIish getSourceRepoURLDefault(AbstractProject job) {
         	URIish url = null;
         	SCM scm = job.getScm();
         	if(!(scm instanceof GitSCM)) {
-        		LOGGER.log(
-						Level.WARNING,
-						"Could not find GitSCM for project, found {0} instead (getSourceRepoURLDefault). Project = {1}, next build = {2}",
-						new String[] { scm.getClass().getCanonicalName(),
-								project.getName(),
-								String.valueOf(project.getNextBuildNumber()) });
-                throw new IllegalArgumentException("This repo does not use git:" + scm.getClass().getCanonicalName());
+        		LOGGER.log(Level.FINE, "Could not find GitSCM for project {0}, found {1} instead (getSourceRepoURLDefault)",
+        				new String[] { job.getFullName(), scm.getClass().getCanonicalName() });
+        		return null;
             }
             if (scm instanceof GitSCM) {
             	List<RemoteConfig> repositories = ((GitSCM) scm).getRepositories();
@@ -477,19 +699,15 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
          * Get the Name of the first declared repository in the project configuration.
          * Use this as default source repository Name.
          * 
-         * @return String with the default name of the source repository
+         * @return String with the default name of the source repository, or null if the project does not use Git
          */
         protected String getSourceRepoNameDefault(AbstractProject job) {
         	String result = null;
         	SCM scm = job.getScm();
         	if(!(scm instanceof GitSCM)) {
-				LOGGER.log(
-						Level.WARNING,
-						"Could not find GitSCM for project, found {0} instead (getSourceRepoNameDefault). Project = {1}, next build = {2}",
-						new String[] { scm.getClass().getCanonicalName(),
-								project.getName(),
-								String.valueOf(project.getNextBuildNumber()) });
-                throw new IllegalArgumentException("This repo does not use git.:" + scm.getClass().getCanonicalName());
+        		LOGGER.log(Level.FINE, "Could not find GitSCM for project {0}, found {1} instead (getSourceRepoNameDefault)",
+        				new String[] { job.getFullName(), scm.getClass().getCanonicalName() });
+        		return null;
             }
             if (scm instanceof GitSCM) {
             	List<RemoteConfig> repositories = ((GitSCM) scm).getRepositories();
@@ -516,6 +734,18 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
             return FormValidation.ok();
         }        
         
+        public FormValidation doCheckWebHookWorkers(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckWebHookQueueCapacity(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckTriggerThreads(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
         public FormValidation doTestConnection(@QueryParameter("gitlabHostUrl") final String hostUrl,
                 @QueryParameter("gitlabApiToken") final String token, @QueryParameter("ignoreCertificateErrors") final boolean ignoreCertificateErrors) throws IOException {
             try {
@@ -527,12 +757,25 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
         }        
 
         public GitLab getGitlab() {
-            if (gitlab == null) {
-                gitlab = new GitLab();
-            }
             return gitlab;
         }
 
+        public GitLabMergeRequestIndex getMergeRequestIndex() {
+            return mergeRequestIndex;
+        }
+
+        public GitLabNoteOutbox getNoteOutbox() {
+            return noteOutbox;
+        }
+
+        public GitLabCommitStatusPublisher getStatusPublisher() {
+            return statusPublisher;
+        }
+
+        public GitLabProjectCache getProjectCache() {
+            return projectCache;
+        }
+
         public String getGitlabApiToken() {
             return gitlabApiToken;
         }
@@ -545,6 +788,53 @@ public class GitLabPushTrigger extends Trigger<AbstractProject<?, ?>> {
         	return ignoreCertificateErrors;
         }
 
+        public boolean getAsyncWebHooks() {
+            return asyncWebHooks;
+        }
+
+        public boolean getPublishCommitStatus() {
+            return publishCommitStatus;
+        }
+
+        public boolean getStatusPollingEnabled() {
+            return statusPollingEnabled;
+        }
+
+        public String getCiSkipMarkers() {
+            return ciSkipMarkers;
+        }
+
+        public GitLabCiSkipMatcher.Policy getCiSkipPolicy() {
+            return ciSkipPolicy;
+        }
+
+        public GitLabCiSkipMatcher getCiSkipMatcher() {
+            return ciSkipMatcher;
+        }
+
+        public int getWebHookWorkers() {
+            return webHookWorkers;
+        }
+
+        public int getWebHookQueueCapacity() {
+            return webHookQueueCapacity;
+        }
+
+        public GitLabWebHookQueue getWebHookQueue() {
+            return webHookQueue;
+        }
+
+        public int getTriggerThreads() {
+            return triggerThreads;
+        }
+
+        /**
+         * @return the queue trigger work is dispatched through, striped by job
+         */
+        public StripedExecutionQueue getTriggerQueue() {
+            return queue;
+        }
+
         public static DescriptorImpl get() {
             return Trigger.all().get(DescriptorImpl.class);
         }
@@ -1,18 +1,9 @@
 package com.dabsquared.gitlabjenkins;
 
-import java.lang.reflect.Type;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.Locale;
+import java.io.Reader;
 
-import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 
 public class GitLabRequest {
@@ -22,8 +13,9 @@ public class GitLabRequest {
 
 		Builder() {
 			gson = new GsonBuilder()
-	        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-	        .registerTypeAdapter(Date.class, new GitLabRequest.DateSerializer())
+	        .registerTypeAdapter(GitLabRequest.class, new GitLabRequestAdapters.Envelope())
+	        .registerTypeAdapter(GitLabPushRequest.class, new GitLabRequestAdapters.PushRequest())
+	        .registerTypeAdapter(GitLabMergeRequest.class, new GitLabRequestAdapters.MergeRequest())
 	        .create();				
 		}
 		
@@ -32,23 +24,23 @@ public class GitLabRequest {
 		}
 	};
 
-	private static final String[] DATE_FORMATS = new String[] {
-			"yyyy-MM-dd HH:mm:ss Z", "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" };
+	/**
+	 * Reads a webhook payload in a single streaming pass and binds it to the request
+	 * type named by its <code>object_kind</code>: a {@link GitLabMergeRequest} for
+	 * merge request events, a {@link GitLabPushRequest} otherwise.
+	 *
+	 * @param payload the request body, which is consumed but not closed
+	 */
+	public static GitLabRequest create(Reader payload) {
+		if (payload == null) {
+			throw new IllegalArgumentException("payload should not be null");
+		}
 
-	private static class DateSerializer implements JsonDeserializer<Date> {
-		public Date deserialize(JsonElement jsonElement, Type typeOF,
-				JsonDeserializationContext context) throws JsonParseException {
-			for (String format : DATE_FORMATS) {
-				try {
-					return new SimpleDateFormat(format, Locale.US)
-							.parse(jsonElement.getAsString());
-				} catch (ParseException e) {
-				}
-			}
-			throw new JsonParseException("Unparseable date: \""
-					+ jsonElement.getAsString() + "\". Supported formats: "
-					+ Arrays.toString(DATE_FORMATS));
+		GitLabRequest request = Builder.INSTANCE.get().fromJson(payload, GitLabRequest.class);
+		if (request == null) {
+			throw new JsonParseException("Payload is not a JSON object");
 		}
+		return request;
 	}
 
 }
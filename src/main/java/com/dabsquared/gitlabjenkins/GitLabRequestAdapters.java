@@ -0,0 +1,409 @@
+package com.dabsquared.gitlabjenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming Gson adapters for the webhook payloads. They bind, without
+ * reflection, only the fields the plugin reads and skip everything else as it
+ * is read, without building a tree: commit URLs, the repository description and
+ * homepage, and the <code>source</code> and <code>target</code> objects of merge
+ * requests are therefore always null.
+ *
+ * Writing emits the same fields in the same layout, so that a request read by
+ * these adapters reads back the same after <code>toJson</code>.
+ */
+final class GitLabRequestAdapters {
+
+    private GitLabRequestAdapters() {
+    }
+
+    /**
+     * Reads either kind of payload in a single pass, and returns a
+     * {@link GitLabMergeRequest} if its <code>object_kind</code> is
+     * <code>merge_request</code>, a {@link GitLabPushRequest} otherwise.
+     * The <code>object_kind</code> may appear anywhere in the payload.
+     */
+    static class Envelope extends TypeAdapter<GitLabRequest> {
+        @Override
+        public GitLabRequest read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            GitLabPushRequest push = new GitLabPushRequest();
+            GitLabMergeRequest mergeRequest = new GitLabMergeRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("object_kind".equals(name)) {
+                    mergeRequest.setObject_kind(nextString(in));
+                } else if ("object_attributes".equals(name)) {
+                    mergeRequest.setObjectAttribute(readObjectAttributes(in));
+                } else {
+                    readPushField(in, name, push);
+                }
+            }
+            in.endObject();
+            return "merge_request".equals(mergeRequest.getObject_kind()) ? mergeRequest : push;
+        }
+
+        @Override
+        public void write(JsonWriter out, GitLabRequest value) throws IOException {
+            if (value instanceof GitLabMergeRequest) {
+                writeMergeRequest(out, (GitLabMergeRequest) value);
+            } else if (value instanceof GitLabPushRequest) {
+                writePushRequest(out, (GitLabPushRequest) value);
+            } else if (value == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.endObject();
+            }
+        }
+    }
+
+    static class PushRequest extends TypeAdapter<GitLabPushRequest> {
+        @Override
+        public GitLabPushRequest read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            GitLabPushRequest push = new GitLabPushRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                readPushField(in, in.nextName(), push);
+            }
+            in.endObject();
+            return push;
+        }
+
+        @Override
+        public void write(JsonWriter out, GitLabPushRequest value) throws IOException {
+            writePushRequest(out, value);
+        }
+    }
+
+    static class MergeRequest extends TypeAdapter<GitLabMergeRequest> {
+        @Override
+        public GitLabMergeRequest read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            GitLabMergeRequest mergeRequest = new GitLabMergeRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("object_kind".equals(name)) {
+                    mergeRequest.setObject_kind(nextString(in));
+                } else if ("object_attributes".equals(name)) {
+                    mergeRequest.setObjectAttribute(readObjectAttributes(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return mergeRequest;
+        }
+
+        @Override
+        public void write(JsonWriter out, GitLabMergeRequest value) throws IOException {
+            writeMergeRequest(out, value);
+        }
+    }
+
+    private static void readPushField(JsonReader in, String name, GitLabPushRequest push) throws IOException {
+        if ("before".equals(name)) {
+            push.setBefore(nextString(in));
+        } else if ("after".equals(name)) {
+            push.setAfter(nextString(in));
+        } else if ("checkout_sha".equals(name)) {
+            push.setCheckout_sha(nextString(in));
+        } else if ("ref".equals(name)) {
+            push.setRef(nextString(in));
+        } else if ("user_id".equals(name)) {
+            push.setUser_id(nextInteger(in));
+        } else if ("user_name".equals(name)) {
+            push.setUser_name(nextString(in));
+        } else if ("project_id".equals(name)) {
+            push.setProject_id(nextInteger(in));
+        } else if ("total_commits_count".equals(name)) {
+            push.setTotal_commits_count(nextInteger(in));
+        } else if ("repository".equals(name)) {
+            push.setRepository(readRepository(in));
+        } else if ("commits".equals(name)) {
+            push.setCommits(readCommits(in));
+        } else {
+            in.skipValue();
+        }
+    }
+
+    private static GitLabPushRequest.Repository readRepository(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GitLabPushRequest.Repository repository = new GitLabPushRequest.Repository();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("name".equals(name)) {
+                repository.setName(nextString(in));
+            } else if ("url".equals(name)) {
+                repository.setUrl(nextString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return repository;
+    }
+
+    private static List<GitLabPushRequest.Commit> readCommits(JsonReader in) throws IOException {
+        List<GitLabPushRequest.Commit> commits = new ArrayList<GitLabPushRequest.Commit>();
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return commits;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            GitLabPushRequest.Commit commit = new GitLabPushRequest.Commit();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("id".equals(name)) {
+                    commit.setId(nextString(in));
+                } else if ("message".equals(name)) {
+                    commit.setMessage(nextString(in));
+                } else if ("timestamp".equals(name)) {
+                    commit.setTimestamp(nextString(in));
+                } else if ("author".equals(name)) {
+                    commit.setAuthor(readUser(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            commits.add(commit);
+        }
+        in.endArray();
+        return commits;
+    }
+
+    private static GitLabPushRequest.User readUser(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GitLabPushRequest.User user = new GitLabPushRequest.User();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("name".equals(name)) {
+                user.setName(nextString(in));
+            } else if ("email".equals(name)) {
+                user.setEmail(nextString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return user;
+    }
+
+    private static GitLabMergeRequest.ObjectAttributes readObjectAttributes(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GitLabMergeRequest.ObjectAttributes attributes = new GitLabMergeRequest.ObjectAttributes();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("id".equals(name)) {
+                attributes.setId(nextInteger(in));
+            } else if ("iid".equals(name)) {
+                attributes.setIid(nextInteger(in));
+            } else if ("target_branch".equals(name)) {
+                attributes.setTargetBranch(nextString(in));
+            } else if ("source_branch".equals(name)) {
+                attributes.setSourceBranch(nextString(in));
+            } else if ("source_project_id".equals(name)) {
+                attributes.setSourceProjectId(nextInteger(in));
+            } else if ("target_project_id".equals(name)) {
+                attributes.setTargetProjectId(nextInteger(in));
+            } else if ("author_id".equals(name)) {
+                attributes.setAuthorId(nextInteger(in));
+            } else if ("assignee_id".equals(name)) {
+                attributes.setAssigneeId(nextInteger(in));
+            } else if ("title".equals(name)) {
+                attributes.setTitle(nextString(in));
+            } else if ("description".equals(name)) {
+                attributes.setDescription(nextString(in));
+            } else if ("created_at".equals(name)) {
+                attributes.setRawCreatedAt(nextString(in));
+            } else if ("updated_at".equals(name)) {
+                attributes.setRawUpdatedAt(nextString(in));
+            } else if ("state".equals(name)) {
+                attributes.setState(nextString(in));
+            } else if ("action".equals(name)) {
+                attributes.setAction(nextString(in));
+            } else if ("merge_status".equals(name)) {
+                attributes.setMergeStatus(nextString(in));
+            } else if ("last_commit".equals(name)) {
+                attributes.setLastCommit(readLastCommit(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return attributes;
+    }
+
+    private static GitLabMergeRequest.LastCommit readLastCommit(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        GitLabMergeRequest.LastCommit commit = new GitLabMergeRequest.LastCommit();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("id".equals(name)) {
+                commit.setId(nextString(in));
+            } else if ("message".equals(name)) {
+                commit.setMessage(nextString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return commit;
+    }
+
+    private static void writePushRequest(JsonWriter out, GitLabPushRequest push) throws IOException {
+        if (push == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("before").value(push.getBefore());
+        out.name("after").value(push.getAfter());
+        out.name("checkout_sha").value(push.getCheckout_sha());
+        out.name("ref").value(push.getRef());
+        out.name("user_id").value(push.getUser_id());
+        out.name("user_name").value(push.getUser_name());
+        out.name("project_id").value(push.getProject_id());
+        out.name("total_commits_count").value(push.getTotal_commits_count());
+        GitLabPushRequest.Repository repository = push.getRepository();
+        out.name("repository");
+        if (repository == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("name").value(repository.getName());
+            out.name("url").value(repository.getUrl());
+            out.endObject();
+        }
+        out.name("commits");
+        if (push.getCommits() == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (GitLabPushRequest.Commit commit : push.getCommits()) {
+                writeCommit(out, commit);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    private static void writeCommit(JsonWriter out, GitLabPushRequest.Commit commit) throws IOException {
+        if (commit == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(commit.getId());
+        out.name("message").value(commit.getMessage());
+        out.name("timestamp").value(commit.getTimestamp());
+        GitLabPushRequest.User author = commit.getAuthor();
+        out.name("author");
+        if (author == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("name").value(author.getName());
+            out.name("email").value(author.getEmail());
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private static void writeMergeRequest(JsonWriter out, GitLabMergeRequest mergeRequest) throws IOException {
+        if (mergeRequest == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("object_kind").value(mergeRequest.getObject_kind());
+        GitLabMergeRequest.ObjectAttributes attributes = mergeRequest.getObjectAttribute();
+        out.name("object_attributes");
+        if (attributes == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            out.name("id").value(attributes.getId());
+            out.name("iid").value(attributes.getIid());
+            out.name("target_branch").value(attributes.getTargetBranch());
+            out.name("source_branch").value(attributes.getSourceBranch());
+            out.name("source_project_id").value(attributes.getSourceProjectId());
+            out.name("target_project_id").value(attributes.getTargetProjectId());
+            out.name("author_id").value(attributes.getAuthorId());
+            out.name("assignee_id").value(attributes.getAssigneeId());
+            out.name("title").value(attributes.getTitle());
+            out.name("description").value(attributes.getDescription());
+            out.name("created_at").value(attributes.getRawCreatedAt());
+            out.name("updated_at").value(attributes.getRawUpdatedAt());
+            out.name("state").value(attributes.getState());
+            out.name("action").value(attributes.getAction());
+            out.name("merge_status").value(attributes.getMergeStatus());
+            GitLabMergeRequest.LastCommit lastCommit = attributes.getLastCommit();
+            out.name("last_commit");
+            if (lastCommit == null) {
+                out.nullValue();
+            } else {
+                out.beginObject();
+                out.name("id").value(lastCommit.getId());
+                out.name("message").value(lastCommit.getMessage());
+                out.endObject();
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+}
@@ -12,12 +12,19 @@ import javax.annotation.Nonnull;
  * RunListener that will be called when a build starts and completes.
  * Will lookup GitLabPushTrigger and call onStarted and onCompleted methods
  * in order to have access to the build and set properties.
+ * Also keeps the {@link GitLabBuildIndex} and {@link GitLabStatusCache} up to date,
+ * and publishes the build state to GitLab if enabled.
  */
 @Extension
 public class GitLabRunListener extends RunListener<AbstractBuild> {
 
     @Override
     public void onCompleted(AbstractBuild abstractBuild, @Nonnull TaskListener listener) {
+        GitLabBuildIndex.onCompleted(abstractBuild);
+        GitLabStatusCache.invalidate(abstractBuild.getProject());
+        if (GitLabPushTrigger.getDesc().getPublishCommitStatus()) {
+            GitLabPushTrigger.getDesc().getStatusPublisher().publishResult(abstractBuild);
+        }
         GitLabPushTrigger trig = getTrigger(abstractBuild);
         if (trig != null) {
             trig.onCompleted(abstractBuild);
@@ -27,6 +34,11 @@ public class GitLabRunListener extends RunListener<AbstractBuild> {
 
     @Override
     public void onStarted(AbstractBuild abstractBuild, TaskListener listener) {
+        GitLabBuildIndex.onStarted(abstractBuild);
+        GitLabStatusCache.invalidate(abstractBuild.getProject());
+        if (GitLabPushTrigger.getDesc().getPublishCommitStatus()) {
+            GitLabPushTrigger.getDesc().getStatusPublisher().publish(abstractBuild, GitLabCommitStatusPublisher.RUNNING);
+        }
         GitLabPushTrigger trig = getTrigger(abstractBuild);
         if (trig != null) {
             trig.onStarted(abstractBuild);
@@ -34,6 +46,13 @@ public class GitLabRunListener extends RunListener<AbstractBuild> {
         super.onStarted(abstractBuild, listener);
     }
 
+    @Override
+    public void onDeleted(AbstractBuild abstractBuild) {
+        GitLabBuildIndex.onDeleted(abstractBuild);
+        GitLabStatusCache.invalidate(abstractBuild.getProject());
+        super.onDeleted(abstractBuild);
+    }
+
 
     private GitLabPushTrigger getTrigger(AbstractBuild abstractBuild) {
         Trigger trig = abstractBuild.getProject().getTrigger(GitLabPushTrigger.class);
@@ -0,0 +1,99 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.model.AbstractProject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Small in-memory cache of rendered status responses, keyed by job and by request
+ * (e.g. the commit SHA1 of a <code>status.json</code> call). All entries of a job
+ * are dropped by {@link GitLabRunListener} whenever one of its builds starts,
+ * completes or is deleted.
+ */
+public final class GitLabStatusCache {
+
+    private static final int MAX_ENTRIES_PER_JOB = 256;
+
+    private static final Map<AbstractProject, Map<String, Entry>> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<AbstractProject, Map<String, Entry>>());
+
+    private GitLabStatusCache() {
+    }
+
+    /**
+     * Returns the cached response for the given key, rendering and caching it on a miss.
+     * A response rendered while the job's entries are invalidated is not cached.
+     */
+    public static Entry get(AbstractProject project, String key, Renderer renderer) {
+        Map<String, Entry> entries = getEntries(project);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            entry = renderer.render();
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private static Map<String, Entry> getEntries(AbstractProject project) {
+        synchronized (CACHE) {
+            Map<String, Entry> entries = CACHE.get(project);
+            if (entries == null) {
+                entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                        return size() > MAX_ENTRIES_PER_JOB;
+                    }
+                };
+                CACHE.put(project, entries);
+            }
+            return entries;
+        }
+    }
+
+    public static void invalidate(AbstractProject project) {
+        CACHE.remove(project);
+    }
+
+    public interface Renderer {
+        Entry render();
+    }
+
+    /**
+     * A rendered response together with the validators sent with it.
+     */
+    public static class Entry {
+        private final String body;
+        private final String etag;
+        private final long lastModified;
+
+        /**
+         * @param etag the quoted, strong entity tag of the response
+         * @param lastModified the modification time in milliseconds, or 0 if unknown
+         */
+        public Entry(String body, String etag, long lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -7,28 +7,27 @@ import hudson.model.ItemGroup;
 import hudson.model.UnprotectedRootAction;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
-import hudson.model.ParametersAction;
-import hudson.model.StringParameterValue;
-import hudson.plugins.git.Branch;
+import hudson.model.listeners.ItemListener;
 import hudson.plugins.git.GitSCM;
-import hudson.plugins.git.util.Build;
-import hudson.plugins.git.util.BuildData;
-import hudson.plugins.git.util.MergeRecord;
 import hudson.scm.SCM;
 import hudson.security.ACL;
 import hudson.security.csrf.CrumbExclusion;
 import hudson.util.HttpResponses;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,21 +37,20 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.acegisecurity.Authentication;
 import org.acegisecurity.context.SecurityContextHolder;
-import org.apache.commons.io.IOUtils;
-import org.eclipse.jgit.lib.ObjectId;
-import org.gitlab.api.models.GitlabMergeRequest;
-import org.gitlab.api.models.GitlabProject;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import com.dabsquared.gitlabjenkins.GitLabMergeRequest;
 import com.dabsquared.gitlabjenkins.GitLabPushRequest;
 import com.dabsquared.gitlabjenkins.GitLabPushTrigger;
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.gson.JsonParseException;
 
 /**
  *
@@ -66,6 +64,17 @@ public class GitLabWebHook implements UnprotectedRootAction {
 
     public static final String WEBHOOK_URL = "project";
 
+    private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+    private static final Splitter VALUE_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private static final int MAX_BATCH_STATUSES = 500;
+
+    /** Projects by the part of the webhook URL that addresses them, see {@link #resolveProject}. */
+    private static final ConcurrentMap<String, AbstractProject<?, ?>> PROJECTS = new ConcurrentHashMap<String, AbstractProject<?, ?>>();
+
+    private final GitLabEventDeduplicator deduplicator = new GitLabEventDeduplicator(TimeUnit.MINUTES.toMillis(10), 10000);
+
     public String getIconFileName() {
         return null;
     }
@@ -78,37 +87,25 @@ public class GitLabWebHook implements UnprotectedRootAction {
         return WEBHOOK_URL;
     }
 
-    public void getDynamic(final String projectName, final StaplerRequest req, StaplerResponse res) {
-        LOGGER.log(Level.WARNING, "WebHook called.");
-        final Iterator<String> restOfPathParts = Splitter.on('/').omitEmptyStrings().split(req.getRestOfPath()).iterator();
-        final AbstractProject<?, ?>[] projectHolder = new AbstractProject<?, ?>[] { null };
-        ACL.impersonate(ACL.SYSTEM, new Runnable() {
-
-            public void run() {
-                final Jenkins jenkins = Jenkins.getInstance();
-                if (jenkins != null) {
-                    Item item = jenkins.getItemByFullName(projectName);
-                    while (item instanceof ItemGroup<?> && !(item instanceof AbstractProject<?, ?>) && restOfPathParts.hasNext()) {
-                        item = jenkins.getItem(restOfPathParts.next(), (ItemGroup<?>) item);
-                    }
-                    if (item instanceof AbstractProject<?, ?>) {
-                        projectHolder[0] = (AbstractProject<?, ?>) item;
-                    }
-                }
-            }
+    /**
+     * @return the number of duplicate webhook deliveries that were acknowledged without triggering anything
+     */
+    public long getSuppressedDuplicates() {
+        return deduplicator.getSuppressedCount();
+    }
 
-        });
+    public void getDynamic(final String projectName, final StaplerRequest req, StaplerResponse res) {
+        LOGGER.log(Level.FINE, "WebHook called.");
+        final List<String> paths = new ArrayList<String>();
+        for (String path : PATH_SPLITTER.split(req.getRestOfPath())) {
+            paths.add(path);
+        }
 
-        final AbstractProject<?, ?> project = projectHolder[0];
+        final AbstractProject<?, ?> project = resolveProject(projectName, paths);
         if (project == null) {
             throw HttpResponses.notFound();
         }
 
-        final List<String> paths = new ArrayList<String>();
-        while (restOfPathParts.hasNext()) {
-            paths.add(restOfPathParts.next());
-        }
-        
         // remove everything till we found 'commits'
         for (Iterator<String> it = paths.iterator(); it.hasNext();) {
             String path = it.next();
@@ -121,15 +118,6 @@ public class GitLabWebHook implements UnprotectedRootAction {
 
         //TODO: Check token authentication with project id. For now we are not using this.
 
-        StringWriter writer = new StringWriter();
-        try {
-            IOUtils.copy(req.getInputStream(), writer, "UTF-8");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        String theString = writer.toString();
-
         if(paths.size() == 0) {
         	if (req.getParameter("ref") != null){
         		// support /project/PROJECT_NAME?ref=BRANCH_NAME
@@ -137,26 +125,27 @@ public class GitLabWebHook implements UnprotectedRootAction {
         		AbstractBuild build = this.getBuildByBranch(project, req.getParameter("ref"));
         		redirectToBuildPage(res, build);
         	} else {
-        		this.generateBuild(theString, project, req, res);           
+        		this.generateBuild(project, req, res);
         	}
         	throw HttpResponses.ok();
         }
 
         String lastPath = paths.get(paths.size()-1);
         String firstPath = paths.get(0);
-        if(lastPath.equals("status.json") && !firstPath.equals("!builds")) {
+        if(lastPath.equals("statuses.json")) {
+            checkStatusPollingEnabled();
+            this.generateStatusesJSON(project, req, res);
+        } else if(lastPath.equals("status.json") && !firstPath.equals("!builds")) {
+            checkStatusPollingEnabled();
             String commitSHA1 = paths.get(1);
             this.generateStatusJSON(commitSHA1, project, req, res);
         } else if(lastPath.equals("build") || (lastPath.equals("status.json") && firstPath.equals("!builds"))) {
-            this.generateBuild(theString, project, req, res);
-        } else if(lastPath.equals("status.png")) {
+            this.generateBuild(project, req, res);
+        } else if(lastPath.equals("status.png") || lastPath.equals("status.svg")) {
             String branch = req.getParameter("ref");
             String commitSHA1 = req.getParameter("sha1");
             try {
-                this.generateStatusPNG(branch, commitSHA1, project, req, res);
-            } catch (ServletException e) {
-                e.printStackTrace();
-                throw HttpResponses.error(500,"Could not generate an image.");
+                this.generateStatusImage(branch, commitSHA1, project, req, res, lastPath.equals("status.svg"));
             } catch (IOException e) {
                 e.printStackTrace();
                 throw HttpResponses.error(500,"Could not generate an image.");
@@ -172,6 +161,63 @@ public class GitLabWebHook implements UnprotectedRootAction {
 
     }
 
+    /**
+     * Finds the project addressed by the webhook URL, descending into folders
+     * with the leading elements of <code>paths</code>, which are removed.
+     * Resolved projects are cached by the consumed part of the URL until an
+     * item is renamed, moved or deleted, or the configuration is reloaded.
+     */
+    private AbstractProject<?, ?> resolveProject(final String projectName, final List<String> paths) {
+        StringBuilder key = new StringBuilder(projectName);
+        AbstractProject<?, ?> project = PROJECTS.get(projectName);
+        int consumed = 0;
+        while (project == null && consumed < paths.size()) {
+            key.append('/').append(paths.get(consumed++));
+            project = PROJECTS.get(key.toString());
+        }
+
+        if (project == null) {
+            final Object[] holder = new Object[] { null, 0 };
+            ACL.impersonate(ACL.SYSTEM, new Runnable() {
+
+                public void run() {
+                    final Jenkins jenkins = Jenkins.getInstance();
+                    if (jenkins != null) {
+                        Item item = jenkins.getItemByFullName(projectName);
+                        int i = 0;
+                        while (item instanceof ItemGroup<?> && !(item instanceof AbstractProject<?, ?>) && i < paths.size()) {
+                            item = jenkins.getItem(paths.get(i++), (ItemGroup<?>) item);
+                        }
+                        if (item instanceof AbstractProject<?, ?>) {
+                            holder[0] = item;
+                            holder[1] = i;
+                        }
+                    }
+                }
+
+            });
+            if (holder[0] == null) {
+                return null;
+            }
+            project = (AbstractProject<?, ?>) holder[0];
+            consumed = (Integer) holder[1];
+            PROJECTS.put(projectName + (consumed == 0 ? "" : "/" + Joiner.on('/').join(paths.subList(0, consumed))), project);
+        }
+
+        paths.subList(0, consumed).clear();
+        return project;
+    }
+
+    /**
+     * Answers 404 when the status endpoints are switched off, because GitLab is told
+     * the build status through the commit status API instead.
+     */
+    private void checkStatusPollingEnabled() {
+        if (!GitLabPushTrigger.getDesc().getStatusPollingEnabled()) {
+            throw HttpResponses.notFound();
+        }
+    }
+
 	private void redirectToBuildPage(StaplerResponse res, AbstractBuild build) {
 		if(build != null) {
 		    try {
@@ -186,53 +232,85 @@ public class GitLabWebHook implements UnprotectedRootAction {
 		}
 	}
 
-    private void generateStatusJSON(String commitSHA1, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+    private void generateStatusJSON(final String commitSHA1, final AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
         SCM scm = project.getScm();
         if(!(scm instanceof GitSCM)) {
             throw new IllegalArgumentException("This repo does not use git.");
         }
 
+        GitLabStatusCache.Entry status = GitLabStatusCache.get(project, "status.json/" + commitSHA1, new GitLabStatusCache.Renderer() {
+            public GitLabStatusCache.Entry render() {
+                return renderStatusJSON(commitSHA1, project);
+            }
+        });
+
+        if(this.checkNotModified(req, rsp, status.getETag(), status.getLastModified())) {
+            throw HttpResponses.status(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+
+        try {
+            this.writeJSON(rsp, status.getBody());
+        } catch (IOException e) {
+            throw HttpResponses.error(500,"Could not generate response.");
+        }
+    }
+
+    private GitLabStatusCache.Entry renderStatusJSON(String commitSHA1, AbstractProject project) {
         AbstractBuild mainBuild = this.getBuildBySHA1(project, commitSHA1, true);
 
         JSONObject object = new JSONObject();
         object.put("sha", commitSHA1);
 
         if(mainBuild == null) {
-            try {
-                object.put("status", "pending");
-                this.writeJSON(rsp, object);
-                return;
-            } catch (IOException e) {
-                throw HttpResponses.error(500,"Could not generate response.");
-            }
+            object.put("status", "pending");
+            return new GitLabStatusCache.Entry(object.toString(), "\"pending\"", 0);
         }
 
-
+        String status = this.getStatus(mainBuild);
         object.put("id", mainBuild.getNumber());
+        object.put("status", status);
 
-        BallColor currentBallColor = mainBuild.getIconColor().noAnime();
+        return new GitLabStatusCache.Entry(object.toString(), "\"" + mainBuild.getNumber() + "-" + status + "\"",
+                this.getLastModified(mainBuild));
+    }
 
-        //TODO: add status of pending when we figure it out.
-        if(mainBuild.isBuilding()) {
-            object.put("status", "running");
-        }else if(currentBallColor == BallColor.BLUE) {
-            object.put("status", "success");
-        }else if(currentBallColor == BallColor.ABORTED) {
-            object.put("status", "failed");
-        }else if(currentBallColor == BallColor.DISABLED) {
-            object.put("status", "failed");
-        }else if(currentBallColor == BallColor.GREY) {
-            object.put("status", "failed");
-        }else if(currentBallColor == BallColor.NOTBUILT) {
-            object.put("status", "failed");
-        }else if(currentBallColor == BallColor.RED) {
-            object.put("status", "failed");
-        }else if(currentBallColor == BallColor.YELLOW) {
-            object.put("status", "failed");
-        } else {
-            object.put("status", "failed");
+    /**
+     * Returns the status of many commits and branches of a job in one response:
+     * <code>commits/statuses.json?sha1=SHA1&amp;sha1=SHA1&amp;ref=BRANCH</code>.
+     * Values may be repeated or comma separated. Commits report their merge request
+     * build, like <code>status.json</code>; branches their latest push build.
+     */
+    private void generateStatusesJSON(AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+        SCM scm = project.getScm();
+        if(!(scm instanceof GitSCM)) {
+            throw new IllegalArgumentException("This repo does not use git.");
+        }
+
+        Set<String> commitSHA1s = this.getParameterValues(req, "sha1");
+        Set<String> branches = this.getParameterValues(req, "ref");
+        if(commitSHA1s.size() + branches.size() > MAX_BATCH_STATUSES) {
+            throw HttpResponses.error(400, "At most " + MAX_BATCH_STATUSES + " commits and branches may be requested at once.");
         }
-        
+
+        Map<String, AbstractBuild> commitBuilds = GitLabBuildIndex.getBuildsBySHA1(project, commitSHA1s, true);
+        JSONArray commits = new JSONArray();
+        for(String commitSHA1 : commitSHA1s) {
+            JSONObject object = this.toStatusJSON(commitBuilds.get(commitSHA1));
+            object.put("sha", commitSHA1);
+            commits.add(object);
+        }
+
+        Map<String, AbstractBuild> branchBuilds = GitLabBuildIndex.getBuildsByBranch(project, branches);
+        JSONArray refs = new JSONArray();
+        for(String branch : branches) {
+            JSONObject object = this.toStatusJSON(branchBuilds.get(branch));
+            object.put("ref", branch);
+            refs.add(object);
+        }
+
+        JSONObject object = new JSONObject();
+        object.put("commits", commits);
+        object.put("branches", refs);
         try {
             this.writeJSON(rsp, object);
         } catch (IOException e) {
@@ -240,8 +318,88 @@ public class GitLabWebHook implements UnprotectedRootAction {
         }
     }
 
+    private JSONObject toStatusJSON(AbstractBuild build) {
+        JSONObject object = new JSONObject();
+        if(build == null) {
+            object.put("status", "pending");
+        } else {
+            object.put("id", build.getNumber());
+            object.put("status", this.getStatus(build));
+        }
+        return object;
+    }
+
+    private Set<String> getParameterValues(StaplerRequest req, String name) {
+        Set<String> values = new LinkedHashSet<String>();
+        String[] parameters = req.getParameterValues(name);
+        if(parameters != null) {
+            for(String parameter : parameters) {
+                for(String value : VALUE_SPLITTER.split(parameter)) {
+                    values.add(value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the GitLab CI status of the build: running, success or failed
+     */
+    private String getStatus(AbstractBuild build) {
+        //TODO: add status of pending when we figure it out.
+        if(build.isBuilding()) {
+            return "running";
+        } else if(build.getIconColor().noAnime() == BallColor.BLUE) {
+            return "success";
+        } else {
+            return "failed";
+        }
+    }
+
+    private long getLastModified(AbstractBuild build) {
+        if(build.isBuilding()) {
+            return build.getTimeInMillis();
+        }
+        return build.getTimeInMillis() + build.getDuration();
+    }
+
+    /**
+     * Sets the validators of the response and checks them against the
+     * If-None-Match and If-Modified-Since headers of the request.
+     *
+     * @return true if the client already has the current response
+     */
+    private boolean checkNotModified(StaplerRequest req, StaplerResponse rsp, String etag, long lastModified) {
+        rsp.setHeader("Cache-Control", "no-cache");
+        rsp.setHeader("ETag", etag);
+        if(lastModified > 0) {
+            rsp.setDateHeader("Last-Modified", lastModified);
+        }
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if(ifNoneMatch != null) {
+            for(String match : ifNoneMatch.split(",")) {
+                match = match.trim();
+                if(match.equals("*") || match.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-    private void generateStatusPNG(String branch, String commitSHA1, AbstractProject project, final StaplerRequest req, final StaplerResponse rsp) throws ServletException, IOException {
+        if(lastModified > 0) {
+            try {
+                long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+                return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+
+    private void generateStatusImage(String branch, String commitSHA1, AbstractProject project, final StaplerRequest req, final StaplerResponse rsp, boolean svg) throws IOException {
         SCM scm = project.getScm();
         if(!(scm instanceof GitSCM)) {
             throw new IllegalArgumentException("This repo does not use git.");
@@ -255,43 +413,18 @@ public class GitLabWebHook implements UnprotectedRootAction {
             mainBuild = this.getBuildBySHA1(project, commitSHA1, false);
         }
 
-        String baseUrl = Jenkins.getInstance().getRootUrl();
-        // Remove trailing slash
-        if (baseUrl.endsWith("/")) {
-           baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
-        }
-        String imageUrl = "images/unknown.png";
-        if(null != mainBuild) {
-        	BallColor currentBallColor = mainBuild.getIconColor().noAnime();
-
-            if(mainBuild.isBuilding()) {        	
-            	imageUrl = "images/running.png";
-            }else if(currentBallColor == BallColor.BLUE) {
-            	imageUrl = "images/success.png";
-            }else if(currentBallColor == BallColor.RED) {
-            	imageUrl = "images/failed.png";
-            }else if(currentBallColor == BallColor.YELLOW) {
-            	imageUrl = "images/unstable.png";
-            }else {
-            	imageUrl = "images/unknown.png"; 
-            }
-        }       
-        Authentication old = SecurityContextHolder.getContext().getAuthentication();
-        SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
-        try {
-            URL resourceUrl = new URL(Jenkins.getInstance().getPlugin("gitlab-plugin").getWrapper().baseResourceURL + imageUrl);
-            LOGGER.info("serving image "+resourceUrl.toExternalForm());
-            rsp.setHeader("Expires","Fri, 01 Jan 1984 00:00:00 GMT");
-            rsp.setHeader("Cache-Control", "no-cache, private");
-            rsp.setHeader("Content-Type", "image/png");
-            hudson.util.IOUtils.copy(new File(resourceUrl.toURI()), rsp.getOutputStream());
-            rsp.flushBuffer();
-        } catch (Exception e) {
-			throw HttpResponses.error(500,"Could not generate response.");
-		} finally {
-            SecurityContextHolder.getContext().setAuthentication(old);
+        String status = GitLabBadge.getStatus(mainBuild);
+        byte[] image = svg ? GitLabBadge.getSVG(status) : GitLabBadge.getPNG(status);
+
+        // the image only depends on the status, so the status is a strong validator
+        if(this.checkNotModified(req, rsp, "\"" + status + "\"", 0)) {
+            throw HttpResponses.status(HttpServletResponse.SC_NOT_MODIFIED);
         }
 
+        rsp.setContentType(svg ? "image/svg+xml" : "image/png");
+        rsp.setContentLength(image.length);
+        rsp.getOutputStream().write(image);
+        rsp.flushBuffer();
     }
 
 
@@ -314,25 +447,77 @@ public class GitLabWebHook implements UnprotectedRootAction {
      #       }, .... more commits
      #     ]
      #   }
-     * @param data
+     * The payload is read straight from the request body in a single pass and
+     * bound to a {@link GitLabPushRequest} or {@link GitLabMergeRequest}
+     * depending on its <code>object_kind</code>.
      */
-    private void generateBuild(String data, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
-        JSONObject json = JSONObject.fromObject(data);
-        LOGGER.log(Level.FINE, "data: {0}", json.toString(4));
+    private void generateBuild(final AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+        GitLabRequest request;
+        try {
+            request = GitLabRequest.create(new InputStreamReader(req.getInputStream(), "UTF-8"));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the request payload.", e);
+            throw HttpResponses.error(500, "Could not read the request payload.");
+        } catch (JsonParseException e) {
+            LOGGER.log(Level.WARNING, "Could not parse the request payload.", e);
+            throw HttpResponses.error(400, "Could not parse the request payload.");
+        }
+        LOGGER.log(Level.FINE, "data: {0}", request);
 
-        String objectType = json.optString("object_kind");
+        String fingerprint = deduplicator.record(project, request);
+        if(fingerprint == null) {
+            LOGGER.log(Level.INFO, "Ignoring duplicate delivery of a webhook event for {0}", project.getFullName());
+            return;
+        }
 
-        if(objectType != null && objectType.equals("merge_request")) {
-            this.generateMergeRequestBuild(data, project, req, rsp);
-        } else {
-            this.generatePushBuild(data, project, req, rsp);
+        GitLabPushTrigger.DescriptorImpl descriptor = GitLabPushTrigger.getDesc();
+        if(descriptor.getAsyncWebHooks()) {
+            final GitLabRequest event = request;
+            final String eventFingerprint = fingerprint;
+            boolean accepted = descriptor.getWebHookQueue().offer(new Runnable() {
+                public void run() {
+                    processEvent(event, eventFingerprint, project, null, null);
+                }
+            });
+            if(!accepted) {
+                deduplicator.forget(fingerprint);
+                LOGGER.log(Level.WARNING, "Webhook queue is full ({0} events), rejecting event for {1}",
+                        new Object[]{descriptor.getWebHookQueue().getCapacity(), project.getFullName()});
+                rsp.setHeader("Retry-After", "30");
+                throw HttpResponses.error(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Webhook queue is full.");
+            }
+            throw HttpResponses.status(HttpServletResponse.SC_ACCEPTED);
         }
+
+        processEvent(request, fingerprint, project, req, rsp);
     }
 
+    /**
+     * Triggers the builds of an event, and forgets its fingerprint if that fails,
+     * so that GitLab's retry of the delivery is not dropped as a duplicate.
+     */
+    private void processEvent(GitLabRequest request, String fingerprint, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+        boolean completed = false;
+        try {
+            generateBuild(request, project, req, rsp);
+            completed = true;
+        } finally {
+            if (!completed) {
+                deduplicator.forget(fingerprint);
+            }
+        }
+    }
+
+    private void generateBuild(GitLabRequest request, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+        if(request instanceof GitLabMergeRequest) {
+            this.generateMergeRequestBuild((GitLabMergeRequest) request, project, req, rsp);
+        } else {
+            this.generatePushBuild((GitLabPushRequest) request, project, req, rsp);
+        }
+    }
 
-    public void generatePushBuild(String json, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
-        GitLabPushRequest request = GitLabPushRequest.create(json);
 
+    public void generatePushBuild(GitLabPushRequest request, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
         String repositoryUrl = request.getRepository().getUrl();
         if (repositoryUrl == null) {
             LOGGER.log(Level.WARNING, "No repository url found.");
@@ -347,11 +532,10 @@ public class GitLabWebHook implements UnprotectedRootAction {
                 return;
             }
 
-            if(trigger.getCiSkip() && request.getLastCommit() != null) {
-                if(request.getLastCommit().getMessage().contains("[ci-skip]")) {
-                    LOGGER.log(Level.INFO, "Skipping due to ci-skip.");
-                    return;
-                }
+            GitLabPushTrigger.DescriptorImpl descriptor = GitLabPushTrigger.getDesc();
+            if(trigger.getCiSkip() && descriptor.getCiSkipMatcher().matches(request.getCommits(), descriptor.getCiSkipPolicy())) {
+                LOGGER.log(Level.INFO, "Skipping due to ci-skip.");
+                return;
             }
 
             trigger.onPost(request);
@@ -365,60 +549,45 @@ public class GitLabWebHook implements UnprotectedRootAction {
         }
     }
 
-	protected void buildOpenMergeRequests(GitLabPushTrigger trigger, Integer projectId, String projectRef) {
+	/**
+	 * Triggers a merge request build for every open merge request whose source is
+	 * the pushed branch of the pushed project. Each merge request is handed to the
+	 * trigger, which sets its build up and submits it on a stripe of its own, so
+	 * that the merge requests are handled concurrently.
+	 */
+	protected void buildOpenMergeRequests(final GitLabPushTrigger trigger, Integer projectId, String projectRef) {
+		List<GitLabMergeRequest.ObjectAttributes> mergeRequests;
 		try {
-			GitLab api = new GitLab();
-			// TODO Replace this with a call to GitlabAPI.getOpenMergeRequests, once timols has deployed version 1.1.7
-			String tailUrl = GitlabProject.URL + "/" + projectId + GitlabMergeRequest.URL + "?state=opened&per_page=100";
-			List<GitlabMergeRequest> mergeRequests = api.instance().retrieve().getAll(tailUrl, GitlabMergeRequest[].class);
-
-			for (org.gitlab.api.models.GitlabMergeRequest mr : mergeRequests) {
-				if (projectRef.endsWith(mr.getSourceBranch())) {
-					LOGGER.log(Level.FINE,
-							"Generating new merge trigger from "
-									+ mr.toString() + "\n source: "
-									+ mr.getSourceBranch() + "\n target: "
-									+ mr.getTargetBranch() + "\n state: "
-									+ mr.getState() + "\n assign: "
-									+ mr.getAssignee() + "\n author: "
-									+ mr.getAuthor() + "\n id: " + mr.getId()
-									+ "\n iid: " + mr.getIid() + "\n\n");
-					GitLabMergeRequest newReq = new GitLabMergeRequest();
-					newReq.setObject_kind("merge_request");
-					newReq.setObjectAttribute(new GitLabMergeRequest.ObjectAttributes());
-					if (mr.getAssignee() != null)
-						newReq.getObjectAttribute().setAssigneeId(mr.getAssignee().getId());
-					if (mr.getAuthor() != null)
-						newReq.getObjectAttribute().setAuthorId(mr.getAuthor().getId());
-					newReq.getObjectAttribute().setDescription(mr.getDescription());
-					newReq.getObjectAttribute().setId(mr.getId());
-					newReq.getObjectAttribute().setIid(mr.getIid());
-					newReq.getObjectAttribute().setMergeStatus(mr.getState());
-					newReq.getObjectAttribute().setSourceBranch(mr.getSourceBranch());
-					newReq.getObjectAttribute().setSourceProjectId(mr.getSourceProjectId());
-					newReq.getObjectAttribute().setTargetBranch(mr.getTargetBranch());
-					newReq.getObjectAttribute().setTargetProjectId(projectId);
-					newReq.getObjectAttribute().setTitle(mr.getTitle());
-
-					Authentication old = SecurityContextHolder.getContext().getAuthentication();
-					SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
-					try {
-						trigger.onPost(newReq);
-					} finally {
-						SecurityContextHolder.getContext().setAuthentication(old);
-					}
-					return;
-				}
-			}
+			String sourceBranch = projectRef.startsWith("refs/heads/") ? projectRef.substring("refs/heads/".length()) : projectRef;
+			mergeRequests = GitLabPushTrigger.getDesc().getMergeRequestIndex()
+					.getOpenMergeRequests(projectId, projectId, sourceBranch);
 		} catch (Exception e) {
 			LOGGER.warning("failed to communicate with gitlab server to determine is this is an update for a merge request: "
 					+ e.getMessage());
 			e.printStackTrace();
+			return;
+		}
+
+		for (final GitLabMergeRequest.ObjectAttributes mr : mergeRequests) {
+			LOGGER.log(Level.FINE, "Generating new merge trigger from {0}", mr);
+			final GitLabMergeRequest newReq = new GitLabMergeRequest();
+			newReq.setObject_kind("merge_request");
+			newReq.setObjectAttribute(mr);
+
+			try {
+				ACL.impersonate(ACL.SYSTEM, new Runnable() {
+					public void run() {
+						trigger.onPost(newReq);
+					}
+				});
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Failed to trigger a build of merge request " + mr.getIid(), e);
+			}
 		}
 	}
 
-    public void generateMergeRequestBuild(String json, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
-        GitLabMergeRequest request = GitLabMergeRequest.create(json);
+    public void generateMergeRequestBuild(GitLabMergeRequest request, AbstractProject project, StaplerRequest req, StaplerResponse rsp) {
+        GitLabPushTrigger.getDesc().getMergeRequestIndex().update(request.getObjectAttribute());
         if(request.getObjectAttribute().getState().equals("closed")) {
         	LOGGER.log(Level.INFO, "Closed Merge Request, no build started");
             return;
@@ -427,10 +596,20 @@ public class GitLabWebHook implements UnprotectedRootAction {
         	LOGGER.log(Level.INFO, "Accepted Merge Request, no build started");
             return;
         }
-        AbstractBuild mergeBuild = getBuildBySHA1(project, request.getObjectAttribute().getLastCommit().getId(), true);
-        if(mergeBuild!=null){
-            LOGGER.log(Level.INFO, "Last commit in Merge Request has already been build in build #"+mergeBuild.getId());
-            return;
+        // some events, e.g. of merge requests without commits, carry no last commit
+        GitLabMergeRequest.LastCommit lastCommit = request.getObjectAttribute().getLastCommit();
+        if (lastCommit != null) {
+            GitLabPushTrigger mergeTrigger = (GitLabPushTrigger) project.getTrigger(GitLabPushTrigger.class);
+            if(mergeTrigger != null && mergeTrigger.getCiSkip()
+                    && GitLabPushTrigger.getDesc().getCiSkipMatcher().matches(lastCommit.getMessage())) {
+                LOGGER.log(Level.INFO, "Skipping Merge Request due to ci-skip.");
+                return;
+            }
+            AbstractBuild mergeBuild = getBuildBySHA1(project, lastCommit.getId(), true);
+            if(mergeBuild!=null){
+                LOGGER.log(Level.INFO, "Last commit in Merge Request has already been build in build #"+mergeBuild.getId());
+                return;
+            }
         }
 
         Authentication old = SecurityContextHolder.getContext().getAuthentication();
@@ -459,91 +638,20 @@ public class GitLabWebHook implements UnprotectedRootAction {
      *
      * @param project
      * @param commitSHA1
-     * @return
+     * @return latest build of the kind specified that built <code>commitSHA1</code>
      */
     private AbstractBuild getBuildBySHA1(AbstractProject project, String commitSHA1, boolean triggeredByMergeRequest) {
-        List<AbstractBuild> builds = project.getBuilds();
-        for(AbstractBuild build : builds) {
-            BuildData data = build.getAction(BuildData.class);
-            MergeRecord mergeRecord = build.getAction(MergeRecord.class);
-            if (mergeRecord == null) {
-                //Determine if build was triggered by a Merge Request event
-                ParametersAction params = build.getAction(ParametersAction.class);
-
-                if (params == null) continue;
-
-                StringParameterValue sourceBranch = (StringParameterValue) params.getParameter("gitlabSourceBranch");
-                StringParameterValue targetBranch = (StringParameterValue) params.getParameter("gitlabTargetBranch");
-                boolean isMergeRequestBuild = (sourceBranch != null && !sourceBranch.value.equals(targetBranch.value));
-
-                if (!triggeredByMergeRequest) {
-    				if (isMergeRequestBuild)
-    					// skip Merge Request builds
-    					continue;
-
-                    if (data.getLastBuiltRevision().getSha1String().contains(commitSHA1)) {
-                        return build;
-                    }
-                } else {
-    				if (!isMergeRequestBuild)
-    					// skip Push builds
-    					continue;
-
-    				if (hasBeenBuilt(data, ObjectId.fromString(commitSHA1), build)) {
-    					return build;
-    				}
-                }
-
-            } else {
-            	Build b =  data.lastBuild;
-            	boolean isMergeBuild = mergeRecord!=null && !mergeRecord.getSha1().equals(b.getMarked().getSha1String());
-            	if(b!=null && b.getMarked()!=null && b.getMarked().getSha1String().equals(commitSHA1)){
-            		if(triggeredByMergeRequest == isMergeBuild){
-            			LOGGER.log(Level.FINE, build.getNumber()+" Build found matching "+commitSHA1+" "+(isMergeBuild? "merge":"normal")+" build");
-            			return build;
-            		}
-            	}
-            }
-        }
-        return null;
+        return GitLabBuildIndex.getBuildBySHA1(project, commitSHA1, triggeredByMergeRequest);
     }
 
-    private boolean hasBeenBuilt(BuildData data, ObjectId sha1, AbstractBuild build) {
-		try {
-			for (Build b : data.getBuildsByBranchName().values()) {
-				if (b.getBuildNumber() == build.number
-						&& b.marked.getSha1().equals(sha1))
-					return true;
-			}
-			return false;
-		} catch (Exception ex) {
-			return false;
-		}
-	}
-    
     /**
      *
      * @param project
      * @param branch
      * @return latest build of the branch specified that is not part of a merge request
      */
-    @SuppressWarnings("rawtypes")
-	private AbstractBuild getBuildByBranch(AbstractProject project, String branch) {
-        List<AbstractBuild> builds = project.getBuilds();
-        for(AbstractBuild build : builds) {
-            BuildData data = build.getAction(BuildData.class);
-            if(data!=null && data.lastBuild!=null) {
-                MergeRecord merge = build.getAction(MergeRecord.class);
-                boolean isMergeBuild = merge != null && !merge.getSha1().equals(data.lastBuild.getMarked().getSha1String());
-                if (data.lastBuild.getRevision() != null && !isMergeBuild) {
-                    for (Branch b : data.lastBuild.getRevision().getBranches()) {
-                        if (b.getName().endsWith("/" + branch))
-                            return build;
-                    }
-                }
-            }
-        }
-        return null;
+    private AbstractBuild getBuildByBranch(AbstractProject project, String branch) {
+        return GitLabBuildIndex.getBuildByBranch(project, branch);
     }
 
 
@@ -553,13 +661,17 @@ public class GitLabWebHook implements UnprotectedRootAction {
      * @throws IOException
      */
     private void writeJSON(StaplerResponse rsp, JSONObject jsonObject) throws IOException {
+        this.writeJSON(rsp, jsonObject == null ? null : jsonObject.toString());
+    }
+
+    private void writeJSON(StaplerResponse rsp, String json) throws IOException {
         rsp.setContentType("application/json");
         PrintWriter w = rsp.getWriter();
 
-        if(jsonObject == null) {
+        if(json == null) {
             w.write("null");
         } else {
-            w.write(jsonObject.toString());
+            w.write(json);
         }
 
         w.flush();
@@ -567,6 +679,34 @@ public class GitLabWebHook implements UnprotectedRootAction {
 
     }
 
+    /**
+     * Drops cached webhook URL resolutions whenever an item is renamed, moved or
+     * deleted, and when the configuration is reloaded from disk.
+     */
+    @Extension
+    public static class GitlabWebHookItemListener extends ItemListener {
+
+        @Override
+        public void onLoaded() {
+            PROJECTS.clear();
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            PROJECTS.clear();
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            PROJECTS.clear();
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            PROJECTS.clear();
+        }
+    }
+
     @Extension
     public static class GitlabWebHookCrumbExclusion extends CrumbExclusion {
 
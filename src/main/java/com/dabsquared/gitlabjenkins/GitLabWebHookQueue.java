@@ -0,0 +1,90 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded in-memory queue of accepted webhook events, drained by a small pool
+ * of worker threads. Used when the webhook endpoint is configured to answer
+ * <code>202 Accepted</code> instead of doing the trigger work on the request thread.
+ */
+public class GitLabWebHookQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabWebHookQueue.class.getName());
+
+    private ThreadPoolExecutor executor;
+    private int workers;
+    private int capacity;
+
+    public GitLabWebHookQueue(int workers, int capacity) {
+        this.workers = workers;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues the given event for processing by a worker thread.
+     *
+     * @return false if the queue is full and the event was not accepted
+     */
+    public boolean offer(final Runnable event) {
+        try {
+            getExecutor().execute(new Runnable() {
+                public void run() {
+                    try {
+                        ACL.impersonate(ACL.SYSTEM, event);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to process queued webhook event.", e);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Changes the pool size and queue capacity. Events already queued are still
+     * processed by the previous pool.
+     */
+    public synchronized void configure(int workers, int capacity) {
+        if (workers == this.workers && capacity == this.capacity) {
+            return;
+        }
+        this.workers = workers;
+        this.capacity = capacity;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the number of events waiting for a worker thread
+     */
+    public synchronized int getDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(capacity),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "GitLab webhook"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
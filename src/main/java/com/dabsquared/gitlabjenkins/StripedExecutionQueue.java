@@ -0,0 +1,150 @@
+package com.dabsquared.gitlabjenkins;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes tasks on a thread pool, one at a time and in submission order per key,
+ * while tasks of different keys run in parallel. A slow task therefore only holds
+ * up later tasks of its own key.
+ *
+ * Keeps track of the number of tasks waiting to run and of how long they waited.
+ */
+public class StripedExecutionQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(StripedExecutionQueue.class.getName());
+
+    private final ThreadPoolExecutor executor;
+
+    /** Stripes that have tasks queued or running, by key. */
+    private final Map<Object, Stripe> stripes = new HashMap<Object, Stripe>();
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    public StripedExecutionQueue(String name, int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), name));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(Object key, Runnable task) {
+        depth.incrementAndGet();
+        synchronized (stripes) {
+            Stripe stripe = stripes.get(key);
+            if (stripe == null) {
+                stripe = new Stripe(key);
+                stripes.put(key, stripe);
+                stripe.tasks.add(new QueuedTask(task));
+                executor.execute(stripe);
+            } else {
+                // the stripe is already scheduled and will pick the task up
+                stripe.tasks.add(new QueuedTask(task));
+            }
+        }
+    }
+
+    public void setThreads(int threads) {
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the average time tasks waited before running, in milliseconds
+     */
+    public long getAverageWaitMillis() {
+        long count = executed.get();
+        return count == 0 ? 0 : totalWaitMillis.get() / count;
+    }
+
+    /**
+     * @return the longest time a task waited before running, in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final long queuedAt = System.currentTimeMillis();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private class Stripe implements Runnable {
+        private final Object key;
+        private final LinkedList<QueuedTask> tasks = new LinkedList<QueuedTask>();
+
+        Stripe(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * Runs the next task of the stripe, then gives the thread back to the
+         * pool so that busy stripes do not starve the others.
+         */
+        public void run() {
+            QueuedTask next;
+            synchronized (stripes) {
+                next = tasks.poll();
+            }
+            try {
+                if (next != null) {
+                    runTask(next);
+                }
+            } finally {
+                // even if the task threw an Error, so that the stripe is not left stuck
+                synchronized (stripes) {
+                    if (tasks.isEmpty()) {
+                        stripes.remove(key);
+                    } else {
+                        executor.execute(this);
+                    }
+                }
+            }
+        }
+
+        private void runTask(QueuedTask queued) {
+            depth.decrementAndGet();
+            long wait = System.currentTimeMillis() - queued.queuedAt;
+            executed.incrementAndGet();
+            totalWaitMillis.addAndGet(wait);
+            for (long max = maxWaitMillis.get(); wait > max && !maxWaitMillis.compareAndSet(max, wait); max = maxWaitMillis.get()) {
+                // retry until the maximum is updated
+            }
+            try {
+                queued.task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Task for " + key + " failed", e);
+            }
+        }
+    }
+}
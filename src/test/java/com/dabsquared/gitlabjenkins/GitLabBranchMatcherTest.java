@@ -0,0 +1,109 @@
+package com.dabsquared.gitlabjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class GitLabBranchMatcherTest {
+
+    @Test
+    public void exactNameMatchesThatBranchOnly() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("master");
+        assertTrue(matcher.matches("master"));
+        assertFalse(matcher.matches("maste"));
+        assertFalse(matcher.matches("master2"));
+        assertFalse(matcher.matches("master/fix"));
+    }
+
+    @Test
+    public void singleStarMatchesOneLevel() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("release/*");
+        assertTrue(matcher.matches("release/"));
+        assertTrue(matcher.matches("release/1.0"));
+        assertFalse(matcher.matches("release/1.0/fix"));
+        assertFalse(matcher.matches("release"));
+        assertFalse(matcher.matches("releases/1.0"));
+    }
+
+    @Test
+    public void doubleStarMatchesAnyLevel() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("feature/**");
+        assertTrue(matcher.matches("feature/foo"));
+        assertTrue(matcher.matches("feature/foo/bar"));
+        assertFalse(matcher.matches("feature"));
+        assertFalse(matcher.matches("features/foo"));
+    }
+
+    @Test
+    public void sharedPrefixesDoNotInterfere() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("fix, fix/*, fixes/**");
+        assertTrue(matcher.matches("fix"));
+        assertTrue(matcher.matches("fix/a"));
+        assertFalse(matcher.matches("fix/a/b"));
+        assertTrue(matcher.matches("fixes/a/b"));
+        assertFalse(matcher.matches("fixe"));
+    }
+
+    @Test
+    public void regularExpressionsAndGlobsFallBackToPattern() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("/hotfix-\\d+/, *-stable, team/**/wip");
+        assertTrue(matcher.matches("hotfix-12"));
+        assertFalse(matcher.matches("hotfix-"));
+        assertTrue(matcher.matches("1.0-stable"));
+        assertFalse(matcher.matches("a/1.0-stable"));
+        assertTrue(matcher.matches("team/a/b/wip"));
+        assertFalse(matcher.matches("team/a/b/done"));
+    }
+
+    @Test
+    public void commasInsideRegularExpressionsDoNotSplit() {
+        assertEquals(Arrays.asList("/release-\\d{1,3}/", "master", "/a,b/"),
+                GitLabBranchMatcher.split(" /release-\\d{1,3}/ , master,/a,b/"));
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("/release-\\d{1,3}/, master");
+        assertTrue(matcher.matches("release-12"));
+        assertFalse(matcher.matches("release-1234"));
+        assertTrue(matcher.matches("master"));
+    }
+
+    @Test
+    public void invalidRegularExpressionIsIgnored() {
+        GitLabBranchMatcher matcher = new GitLabBranchMatcher("/hotfix-(/, master");
+        assertFalse(matcher.isEmpty());
+        assertTrue(matcher.matches("master"));
+        assertFalse(matcher.matches("hotfix-("));
+        GitLabBranchMatcher invalidOnly = new GitLabBranchMatcher("/[/");
+        assertFalse(invalidOnly.isEmpty());
+        assertFalse(invalidOnly.matches("master"));
+        assertEquals(1, GitLabBranchMatcher.validate("/hotfix-(/, master, /ok/").size());
+        assertTrue(GitLabBranchMatcher.validate("master, /ok/").isEmpty());
+    }
+
+    @Test
+    public void emptySpecification() {
+        assertTrue(new GitLabBranchMatcher(null).isEmpty());
+        assertTrue(new GitLabBranchMatcher(" , ").isEmpty());
+        assertFalse(new GitLabBranchMatcher("").matches("master"));
+    }
+
+    @Test
+    public void exclusionTakesPrecedence() {
+        GitLabPushTrigger trigger = new GitLabPushTrigger(true, false, false, false, false, false, false, false,
+                "feature/**, master", "feature/wip-*");
+        assertTrue(trigger.isBranchAllowed("master"));
+        assertTrue(trigger.isBranchAllowed("feature/foo"));
+        assertFalse(trigger.isBranchAllowed("feature/wip-foo"));
+        assertFalse(trigger.isBranchAllowed("develop"));
+
+        trigger = new GitLabPushTrigger(true, false, false, false, false, false, false, false, "", "develop");
+        assertTrue(trigger.isBranchAllowed("master"));
+        assertFalse(trigger.isBranchAllowed("develop"));
+
+        // a typo in the only allowed pattern must not allow every branch
+        trigger = new GitLabPushTrigger(true, false, false, false, false, false, false, false, "/[/", "");
+        assertFalse(trigger.isBranchAllowed("master"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.dabsquared.gitlabjenkins;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GitLabCiSkipMatcherTest {
+
+    private final GitLabCiSkipMatcher matcher = new GitLabCiSkipMatcher(GitLabCiSkipMatcher.DEFAULT_MARKERS);
+
+    @Test
+    public void findsEachDefaultMarker() {
+        assertTrue(matcher.matches("Fix typo [ci-skip]"));
+        assertTrue(matcher.matches("[ci skip] Fix typo"));
+        assertTrue(matcher.matches("Fix [skip ci] typo"));
+        assertFalse(matcher.matches("Fix typo"));
+        assertFalse(matcher.matches("[ci] skip"));
+    }
+
+    @Test
+    public void ignoresCase() {
+        assertTrue(matcher.matches("Fix typo [CI SKIP]"));
+        assertTrue(matcher.matches("Fix typo [Skip Ci]"));
+        assertTrue(new GitLabCiSkipMatcher("[NO BUILD]").matches("fix [no build]"));
+    }
+
+    @Test
+    public void findsOverlappingMarkers() {
+        // "[ci s" is left for "[skip ci]" without rescanning
+        assertTrue(matcher.matches("[ci [skip ci]"));
+        assertTrue(matcher.matches("[ci s[ci skip]"));
+        assertTrue(matcher.matches("[skip [ci skip]"));
+        assertFalse(matcher.matches("[skip ci skip]"));
+
+        // a marker inside a longer one that does not complete
+        GitLabCiSkipMatcher nested = new GitLabCiSkipMatcher("abcd, bc");
+        assertTrue(nested.matches("xabcx"));
+        assertTrue(nested.matches("abcd"));
+        assertFalse(nested.matches("abd"));
+    }
+
+    @Test
+    public void ignoresNullMessagesAndEmptyMarkers() {
+        assertFalse(matcher.matches((String) null));
+        assertFalse(new GitLabCiSkipMatcher("").matches("[ci skip]"));
+        assertFalse(new GitLabCiSkipMatcher(null).matches("[ci skip]"));
+
+        List<GitLabPushRequest.Commit> commits = commits(null, "[ci skip]");
+        assertTrue(matcher.matches(commits, GitLabCiSkipMatcher.Policy.ANY));
+        assertFalse(matcher.matches(commits, GitLabCiSkipMatcher.Policy.ALL));
+    }
+
+    @Test
+    public void anyPolicySkipsWhenOneCommitIsMarked() {
+        assertTrue(matcher.matches(commits("Fix", "Docs [skip ci]"), GitLabCiSkipMatcher.Policy.ANY));
+        assertTrue(matcher.matches(commits("[ci skip] Fix", "Docs"), GitLabCiSkipMatcher.Policy.ANY));
+        assertFalse(matcher.matches(commits("Fix", "Docs"), GitLabCiSkipMatcher.Policy.ANY));
+    }
+
+    @Test
+    public void allPolicySkipsOnlyWhenEveryCommitIsMarked() {
+        assertTrue(matcher.matches(commits("Fix [ci skip]", "Docs [skip ci]"), GitLabCiSkipMatcher.Policy.ALL));
+        assertFalse(matcher.matches(commits("Fix", "Docs [skip ci]"), GitLabCiSkipMatcher.Policy.ALL));
+    }
+
+    @Test
+    public void neverSkipsAPushWithoutCommits() {
+        for (GitLabCiSkipMatcher.Policy policy : GitLabCiSkipMatcher.Policy.values()) {
+            assertFalse(matcher.matches(new ArrayList<GitLabPushRequest.Commit>(), policy));
+            assertFalse(matcher.matches((List<GitLabPushRequest.Commit>) null, policy));
+        }
+    }
+
+    private static List<GitLabPushRequest.Commit> commits(String... messages) {
+        List<GitLabPushRequest.Commit> commits = new ArrayList<GitLabPushRequest.Commit>();
+        for (String message : Arrays.asList(messages)) {
+            GitLabPushRequest.Commit commit = new GitLabPushRequest.Commit();
+            commit.setMessage(message);
+            commits.add(commit);
+        }
+        return commits;
+    }
+}
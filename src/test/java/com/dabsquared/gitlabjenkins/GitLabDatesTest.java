@@ -0,0 +1,125 @@
+package com.dabsquared.gitlabjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link GitLabDates} against the SimpleDateFormat patterns it replaced.
+ */
+public class GitLabDatesTest {
+
+    private static final String GITLAB_FORMAT = "yyyy-MM-dd HH:mm:ss Z";
+    private static final String ISO_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+    @Test
+    public void gitLabFormat() throws ParseException {
+        assertParsed("2014-06-08 17:23:34 +0200", GITLAB_FORMAT, "2014-06-08 17:23:34 +0200");
+        assertParsed("2014-06-08 17:23:34 -0530", GITLAB_FORMAT, "2014-06-08 17:23:34 -0530");
+        assertParsed("2014-06-08 17:23:34 +0000", GITLAB_FORMAT, "2014-06-08 17:23:34 +0000");
+    }
+
+    @Test
+    public void utcZone() throws ParseException {
+        assertParsed("2014-06-08 17:23:34 +0000", GITLAB_FORMAT, "2014-06-08 17:23:34 UTC");
+        assertParsed("2014-06-08 17:23:34 +0000", GITLAB_FORMAT, "2014-06-08 17:23:34 GMT");
+    }
+
+    @Test
+    public void offsetWithColon() throws ParseException {
+        assertParsed("2014-06-08 17:23:34 +0200", GITLAB_FORMAT, "2014-06-08 17:23:34 +02:00");
+        assertParsed("2014-06-08 17:23:34 -0930", GITLAB_FORMAT, "2014-06-08T17:23:34-09:30");
+    }
+
+    @Test
+    public void isoFormat() throws ParseException {
+        assertParsed("2014-06-08T15:23:34.123Z", ISO_FORMAT, "2014-06-08T15:23:34.123Z");
+        assertParsed("2014-06-08T15:23:34.000Z", ISO_FORMAT, "2014-06-08T15:23:34Z");
+    }
+
+    @Test
+    public void fractionalSeconds() throws ParseException {
+        assertParsed("2014-06-08T15:23:34.100Z", ISO_FORMAT, "2014-06-08T15:23:34.1Z");
+        assertParsed("2014-06-08T15:23:34.120Z", ISO_FORMAT, "2014-06-08T15:23:34.12Z");
+        // beyond milliseconds is truncated
+        assertParsed("2014-06-08T15:23:34.123Z", ISO_FORMAT, "2014-06-08T15:23:34.123456Z");
+        assertParsed("2014-06-08 17:23:34 +0200", GITLAB_FORMAT, "2014-06-08 15:23:34.000 UTC");
+    }
+
+    @Test
+    public void leapDays() throws ParseException {
+        assertParsed("2012-02-29 23:59:59 +0000", GITLAB_FORMAT, "2012-02-29 23:59:59 +0000");
+        assertParsed("2000-02-29T00:00:00.000Z", ISO_FORMAT, "2000-02-29T00:00:00.000Z");
+        assertParsed("2012-03-01T00:00:00.000Z", ISO_FORMAT, "2012-03-01T00:00:00Z");
+        assertParsed("2100-03-01T00:00:00.000Z", ISO_FORMAT, "2100-03-01T00:00:00Z");
+    }
+
+    @Test
+    public void before1970() throws ParseException {
+        assertParsed("1969-12-31 23:59:59 +0000", GITLAB_FORMAT, "1969-12-31 23:59:59 +0000");
+        assertParsed("1900-03-01T00:00:00.500Z", ISO_FORMAT, "1900-03-01T00:00:00.5Z");
+        assertParsed("1600-02-29 12:00:00 -0100", GITLAB_FORMAT, "1600-02-29 12:00:00 -0100");
+    }
+
+    @Test
+    public void everyThirtySevenHoursFrom1950To2040() throws ParseException {
+        SimpleDateFormat gitLab = format(GITLAB_FORMAT);
+        gitLab.setTimeZone(TimeZone.getTimeZone("GMT+05:30"));
+        SimpleDateFormat iso = format(ISO_FORMAT);
+        long end = format(ISO_FORMAT).parse("2040-01-01T00:00:00.000Z").getTime();
+        for (long time = format(ISO_FORMAT).parse("1950-01-01T00:00:00.000Z").getTime(); time < end; time += 37 * 3600 * 1000L + 1234) {
+            Date date = new Date(time);
+            assertEquals(new Date(time - (time % 1000 + 1000) % 1000), GitLabDates.parse(gitLab.format(date)));
+            assertEquals(date, GitLabDates.parse(iso.format(date)));
+        }
+    }
+
+    @Test
+    public void unknownFormats() {
+        assertNull(GitLabDates.parse(null));
+        assertNull(GitLabDates.parse(""));
+        assertNull(GitLabDates.parse("yesterday"));
+        assertNull(GitLabDates.parse("2014-06-08"));
+        assertNull(GitLabDates.parse("2014/06/08 17:23:34 +0200"));
+        assertNull(GitLabDates.parse("2014-13-08 17:23:34 +0200"));
+        assertNull(GitLabDates.parse("2014-06-08 24:23:34 +0200"));
+        assertNull(GitLabDates.parse("2014-06-08 17:23:34 +02"));
+        assertNull(GitLabDates.parse("2014-06-08 17:23:34 CEST"));
+        assertNull(GitLabDates.parse("2014-06-08T15:23:34.Z"));
+        assertNull(GitLabDates.parse("2014-06-08T15:23:34Zulu"));
+    }
+
+    @Test
+    public void attributesParseOnceAndKeepFailures() {
+        GitLabMergeRequest.ObjectAttributes attributes = new GitLabMergeRequest.ObjectAttributes();
+        attributes.setRawCreatedAt("2014-06-08 17:23:34 +0200");
+        Date createdAt = attributes.getCreatedAt();
+        assertSame(createdAt, attributes.getCreatedAt());
+
+        attributes.setRawUpdatedAt("not a date");
+        assertNull(attributes.getUpdatedAt());
+        assertNull(attributes.getUpdatedAt());
+        attributes.setRawUpdatedAt("2014-06-08T15:23:34Z");
+        assertEquals(createdAt, attributes.getUpdatedAt());
+    }
+
+    private static void assertParsed(String expected, String pattern, String value) throws ParseException {
+        assertEquals(value, format(pattern).parse(expected), GitLabDates.parse(value));
+    }
+
+    private static SimpleDateFormat format(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        // the literal 'Z' of the ISO pattern is UTC, as GitLab means it
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        return format;
+    }
+}
@@ -0,0 +1,195 @@
+package com.dabsquared.gitlabjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.google.gson.JsonParseException;
+
+public class GitLabRequestTest {
+
+    static final String PUSH = "{"
+            + "\"object_kind\": \"push\","
+            + "\"before\": \"95790bf891e76fee5e1747ab589903a6a1f80f22\","
+            + "\"after\": \"da1560886d4f094c3e6c9ef40349f7d38b5d27d7\","
+            + "\"ref\": \"refs/heads/master\","
+            + "\"checkout_sha\": \"da1560886d4f094c3e6c9ef40349f7d38b5d27d7\","
+            + "\"user_id\": 4,"
+            + "\"user_name\": \"John Smith\","
+            + "\"user_email\": \"john@example.com\","
+            + "\"project_id\": 15,"
+            + "\"repository\": {"
+            + "  \"name\": \"Diaspora\","
+            + "  \"url\": \"git@example.com:mike/diaspora.git\","
+            + "  \"description\": \"\","
+            + "  \"homepage\": \"http://example.com/mike/diaspora\","
+            + "  \"git_http_url\": \"http://example.com/mike/diaspora.git\""
+            + "},"
+            + "\"commits\": ["
+            + "  {"
+            + "    \"id\": \"b6568db1bc1dcd7f8b4d5a946b0b91f9dacd7327\","
+            + "    \"message\": \"Update Catalan translation to e38cb41.\","
+            + "    \"timestamp\": \"2011-12-12T14:27:31+02:00\","
+            + "    \"url\": \"http://example.com/mike/diaspora/commit/b6568db1\","
+            + "    \"author\": {\"name\": \"Jordi Mallach\", \"email\": \"jordi@softcatala.org\"},"
+            + "    \"added\": [\"CHANGELOG\"], \"modified\": [], \"removed\": []"
+            + "  },"
+            + "  {"
+            + "    \"id\": \"da1560886d4f094c3e6c9ef40349f7d38b5d27d7\","
+            + "    \"message\": \"fixed readme [ci skip]\","
+            + "    \"timestamp\": \"2012-01-03T23:36:29+02:00\","
+            + "    \"url\": \"http://example.com/mike/diaspora/commit/da156088\","
+            + "    \"author\": {\"name\": \"GitLab dev user\", \"email\": \"gitlabdev@dv6700.(none)\"}"
+            + "  }"
+            + "],"
+            + "\"total_commits_count\": 2"
+            + "}";
+
+    static final String MERGE_REQUEST = "{"
+            + "\"user\": {\"name\": \"Administrator\", \"username\": \"root\", \"avatar_url\": null},"
+            + "\"object_attributes\": {"
+            + "  \"id\": 99,"
+            + "  \"target_branch\": \"master\","
+            + "  \"source_branch\": \"ms-viewport\","
+            + "  \"source_project_id\": 14,"
+            + "  \"author_id\": 51,"
+            + "  \"assignee_id\": 6,"
+            + "  \"title\": \"MS-Viewport\","
+            + "  \"created_at\": \"2013-12-03T17:23:34Z\","
+            + "  \"updated_at\": \"2013-12-03 17:23:34 UTC\","
+            + "  \"st_commits\": null,"
+            + "  \"milestone_id\": null,"
+            + "  \"state\": \"opened\","
+            + "  \"merge_status\": \"unchecked\","
+            + "  \"target_project_id\": 14,"
+            + "  \"iid\": 1,"
+            + "  \"description\": \"\","
+            + "  \"source\": {\"name\": \"awesome_project\", \"ssh_url\": \"ssh://git@example.com/awesome_space/awesome_project.git\", \"labels\": [{\"id\": 1}]},"
+            + "  \"target\": {\"name\": \"awesome_project\"},"
+            + "  \"last_commit\": {"
+            + "    \"id\": \"da1560886d4f094c3e6c9ef40349f7d38b5d27d7\","
+            + "    \"message\": \"fixed readme\","
+            + "    \"timestamp\": \"2012-01-03T23:36:29+02:00\","
+            + "    \"author\": {\"name\": \"GitLab dev user\", \"email\": \"gitlabdev@dv6700.(none)\"}"
+            + "  },"
+            + "  \"url\": \"http://example.com/diaspora/merge_requests/1\","
+            + "  \"action\": \"open\""
+            + "},"
+            + "\"object_kind\": \"merge_request\""
+            + "}";
+
+    @Test
+    public void bindsPushPayload() {
+        GitLabPushRequest push = (GitLabPushRequest) GitLabRequest.create(new StringReader(PUSH));
+        assertEquals("95790bf891e76fee5e1747ab589903a6a1f80f22", push.getBefore());
+        assertEquals("da1560886d4f094c3e6c9ef40349f7d38b5d27d7", push.getAfter());
+        assertEquals("da1560886d4f094c3e6c9ef40349f7d38b5d27d7", push.getCheckout_sha());
+        assertEquals("refs/heads/master", push.getRef());
+        assertEquals(Integer.valueOf(4), push.getUser_id());
+        assertEquals("John Smith", push.getUser_name());
+        assertEquals(Integer.valueOf(15), push.getProject_id());
+        assertEquals(Integer.valueOf(2), push.getTotal_commits_count());
+        assertEquals("Diaspora", push.getRepository().getName());
+        assertEquals("git@example.com:mike/diaspora.git", push.getRepository().getUrl());
+        assertNull(push.getRepository().getHomepage());
+        assertEquals(2, push.getCommits().size());
+        GitLabPushRequest.Commit last = push.getLastCommit();
+        assertEquals("da1560886d4f094c3e6c9ef40349f7d38b5d27d7", last.getId());
+        assertEquals("fixed readme [ci skip]", last.getMessage());
+        assertEquals("2012-01-03T23:36:29+02:00", last.getTimestamp());
+        assertEquals("GitLab dev user", last.getAuthor().getName());
+        assertNull(last.getUrl());
+    }
+
+    @Test
+    public void bindsMergeRequestPayloadWithObjectKindLast() {
+        GitLabMergeRequest mergeRequest = (GitLabMergeRequest) GitLabRequest.create(new StringReader(MERGE_REQUEST));
+        assertEquals("merge_request", mergeRequest.getObject_kind());
+        GitLabMergeRequest.ObjectAttributes attributes = mergeRequest.getObjectAttribute();
+        assertEquals(Integer.valueOf(99), attributes.getId());
+        assertEquals(Integer.valueOf(1), attributes.getIid());
+        assertEquals("master", attributes.getTargetBranch());
+        assertEquals("ms-viewport", attributes.getSourceBranch());
+        assertEquals(Integer.valueOf(14), attributes.getSourceProjectId());
+        assertEquals(Integer.valueOf(14), attributes.getTargetProjectId());
+        assertEquals(Integer.valueOf(51), attributes.getAuthorId());
+        assertEquals(Integer.valueOf(6), attributes.getAssigneeId());
+        assertEquals("MS-Viewport", attributes.getTitle());
+        assertEquals("opened", attributes.getState());
+        assertEquals("open", attributes.getAction());
+        assertEquals("unchecked", attributes.getMergeStatus());
+        assertEquals(new Date(1386091414000L), attributes.getCreatedAt());
+        assertEquals(new Date(1386091414000L), attributes.getUpdatedAt());
+        assertEquals("da1560886d4f094c3e6c9ef40349f7d38b5d27d7", attributes.getLastCommit().getId());
+        assertEquals("fixed readme", attributes.getLastCommit().getMessage());
+        assertNull(attributes.getSource());
+        assertNull(attributes.getTarget());
+    }
+
+    @Test
+    public void bindsMergeRequestWithoutLastCommit() {
+        String payload = "{\"object_kind\": \"merge_request\", \"object_attributes\": "
+                + "{\"id\": 1, \"iid\": 2, \"state\": \"opened\", \"last_commit\": null, \"assignee_id\": null}}";
+        GitLabMergeRequest mergeRequest = (GitLabMergeRequest) GitLabRequest.create(new StringReader(payload));
+        assertEquals(Integer.valueOf(2), mergeRequest.getObjectAttribute().getIid());
+        assertNull(mergeRequest.getObjectAttribute().getLastCommit());
+        assertNull(mergeRequest.getObjectAttribute().getAssigneeId());
+    }
+
+    @Test
+    public void skipsUnknownNestedFields() {
+        String payload = "{\"ref\": \"refs/heads/feature\", \"extra\": {\"nested\": [1, {\"deeper\": [true, null]}]},"
+                + " \"repository\": {\"visibility\": {\"level\": 20}, \"name\": \"demo\"},"
+                + " \"commits\": [{\"id\": \"abc\", \"stats\": {\"added\": [\"a\", \"b\"]}, \"message\": \"m\"}],"
+                + " \"project_id\": 3}";
+        GitLabPushRequest push = (GitLabPushRequest) GitLabRequest.create(new StringReader(payload));
+        assertEquals("refs/heads/feature", push.getRef());
+        assertEquals("demo", push.getRepository().getName());
+        assertEquals("abc", push.getLastCommit().getId());
+        assertEquals("m", push.getLastCommit().getMessage());
+        assertEquals(Integer.valueOf(3), push.getProject_id());
+    }
+
+    @Test
+    public void bindsSpecificTypes() {
+        assertEquals("refs/heads/master", GitLabPushRequest.create(PUSH).getRef());
+        assertEquals("ms-viewport", GitLabMergeRequest.create(MERGE_REQUEST).getObjectAttribute().getSourceBranch());
+    }
+
+    @Test
+    public void writesWhatItReads() {
+        GitLabRequest.Builder builder = GitLabRequest.Builder.INSTANCE;
+        GitLabPushRequest push = (GitLabPushRequest) GitLabRequest.create(new StringReader(PUSH));
+        GitLabPushRequest pushCopy = (GitLabPushRequest) GitLabRequest.create(new StringReader(builder.get().toJson(push)));
+        assertEquals(push.getAfter(), pushCopy.getAfter());
+        assertEquals(push.getProject_id(), pushCopy.getProject_id());
+        assertEquals(push.getRepository().getUrl(), pushCopy.getRepository().getUrl());
+        assertEquals(push.getCommits().size(), pushCopy.getCommits().size());
+        assertEquals(push.getLastCommit().getAuthor().getEmail(), pushCopy.getLastCommit().getAuthor().getEmail());
+
+        GitLabMergeRequest mergeRequest = (GitLabMergeRequest) GitLabRequest.create(new StringReader(MERGE_REQUEST));
+        mergeRequest.getObjectAttribute().setUpdatedAt(new Date(-1234567890123L));
+        String json = builder.get().toJson(mergeRequest, GitLabRequest.class);
+        GitLabMergeRequest copy = (GitLabMergeRequest) GitLabRequest.create(new StringReader(json));
+        assertEquals("merge_request", copy.getObject_kind());
+        assertEquals(Integer.valueOf(99), copy.getObjectAttribute().getId());
+        assertEquals(mergeRequest.getObjectAttribute().getCreatedAt(), copy.getObjectAttribute().getCreatedAt());
+        assertEquals(new Date(-1234567890123L), copy.getObjectAttribute().getUpdatedAt());
+        assertEquals("fixed readme", copy.getObjectAttribute().getLastCommit().getMessage());
+    }
+
+    @Test
+    public void rejectsNonObjectPayloads() {
+        try {
+            GitLabRequest.create(new StringReader("null"));
+            fail("expected a JsonParseException");
+        } catch (JsonParseException e) {
+            // expected
+        }
+    }
+}